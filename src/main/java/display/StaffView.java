@@ -2,7 +2,8 @@ package display;
 
 import music.pitch.BasicNote;
 import music.play.Staff;
-import music.play.Voice;
+import music.play.StaffCursor;
+import music.rhythm.Duration;
 import music.rhythm.Rest;
 
 import javax.swing.*;
@@ -31,11 +32,23 @@ public class StaffView extends JComponent {
     public void paint(Graphics g) {
         super.paint(g);
 
-        int vOffset = 0;
-        for (Voice v : staff.voices) {
-            int nOffset = 0;
+        StaffCursor c = staff.cursor();
+
+        // walk the voices together, so notes sounding at once are drawn at the same x
+        while (c.next()) {
+            int x = (int) (c.getTick() * BEAT_WIDTH_PX / Duration.TICKS_PER_WHOLE_NOTE);
+
+            for (int vOffset = 0; vOffset < c.voiceCount(); vOffset++) {
+                if (!c.isOnset(vOffset)) {
+                    continue;
+                }
+
+                BasicNote n = c.getNote(vOffset);
+
+                if (n instanceof Rest) {
+                    continue;
+                }
 
-            for (BasicNote n : v.melody) {
                 int vSpacing = 0;
 
                 if (vOffset > 0) {
@@ -45,12 +58,8 @@ public class StaffView extends JComponent {
                 int noteWidth = (int)(n.getDuration().getDoubleValue() * BEAT_WIDTH_PX);
 
                 g.setColor(VOICE_COLORS[vOffset]);
-                if (!(n instanceof Rest)) {
-                    g.fillRect(nOffset, vOffset * VOICE_HEIGHT_PX + vSpacing, noteWidth, VOICE_HEIGHT_PX);
-                }
-                nOffset += noteWidth + 1;
+                g.fillRect(x, vOffset * VOICE_HEIGHT_PX + vSpacing, noteWidth - 1, VOICE_HEIGHT_PX);
             }
-            vOffset++;
         }
     }
 }
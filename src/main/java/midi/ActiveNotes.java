@@ -0,0 +1,84 @@
+package midi;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Notes which have started but not yet ended, for each channel and key.
+ * <p>
+ * Each channel and key has a queue, so overlapping re-strikes of the same key are closed in the order they started.
+ * Closing a note sets its end tick and its Duration, rounded by the file's TickQuantizer.
+ *
+ * @param <N> The kind of note held.
+ * @author reedt
+ */
+class ActiveNotes<N extends MidiFileParser.MidiNote> {
+    private static final int NUM_CHANNELS = 16;
+    private static final int NUM_KEYS = 128;
+
+    private final TickQuantizer quantizer;
+
+    // indexed by channel * NUM_KEYS + key, null until the key is first struck
+    private final List<ArrayDeque<N>> sounding = new ArrayList<>(Collections.nCopies(NUM_CHANNELS * NUM_KEYS, null));
+
+    /**
+     * @param quantizer Rounds the length of each closed note.
+     */
+    ActiveNotes(TickQuantizer quantizer) {
+        this.quantizer = quantizer;
+    }
+
+    /**
+     * Remember a note as sounding until its NOTE_OFF arrives.
+     */
+    void start(int channel, int key, N note) {
+        int slot = channel * NUM_KEYS + key;
+        ArrayDeque<N> notes = sounding.get(slot);
+
+        if (notes == null) {
+            notes = new ArrayDeque<>();
+            sounding.set(slot, notes);
+        }
+
+        notes.addLast(note);
+    }
+
+    /**
+     * Close the earliest still sounding note on a channel and key.
+     *
+     * @return The note closed, or null if none was sounding.
+     */
+    N end(long tick, int channel, int key) {
+        ArrayDeque<N> notes = sounding.get(channel * NUM_KEYS + key);
+        N n = notes == null ? null : notes.pollFirst();
+
+        if (n != null) {
+            close(n, tick);
+        }
+
+        return n;
+    }
+
+    /**
+     * Close every note still sounding where it starts, as notes which are never released last no time.
+     *
+     * @param closed Told about each note closed.
+     */
+    void endAll(Consumer<N> closed) {
+        for (ArrayDeque<N> notes : sounding) {
+            while (notes != null && !notes.isEmpty()) {
+                N n = notes.pollFirst();
+                close(n, n.tickStart);
+                closed.accept(n);
+            }
+        }
+    }
+
+    private void close(N n, long tick) {
+        n.note.setDuration(quantizer.quantize(tick - n.tickStart));
+        n.tickEnd = tick;
+    }
+}
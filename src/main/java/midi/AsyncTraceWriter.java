@@ -0,0 +1,252 @@
+package midi;
+
+import music.play.key.KeySignature;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Debugging ParseEventListener which writes one line of text per parse event.
+ * Events are copied into a preallocated ring buffer by the parsing thread, and formatted and written
+ * by a background thread, so tracing costs the parser little more than a few array stores per event.
+ * <p>
+ * The ring buffer has a single producer: use one writer per parser. If the buffer fills up, the parser
+ * waits for the writer to catch up rather than drop events.
+ *
+ * @author reedt
+ */
+public class AsyncTraceWriter implements ParseEventListener, AutoCloseable {
+    private static final int NOTE_ON = 0;
+    private static final int NOTE_OFF = 1;
+    private static final int CHANNEL_MESSAGE = 2;
+    private static final int META_MESSAGE = 3;
+
+    private static final long IDLE_PARK_NANOS = 100_000;
+
+    private final Appendable out;
+    private final Thread writerThread;
+
+    // ring buffer slots, one event per index
+    private final int mask;
+    private final long[] ticks;
+    private final int[] kinds;
+    private final int[] channels;
+    private final int[] data1s;
+    private final int[] data2s;
+    private final byte[][] metaData;
+
+    /**
+     * Sequence number of the next event to be published by the parser.
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * Sequence number of the next event to be written out.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    private volatile boolean closed;
+    private IOException writeError;
+
+    /**
+     * Create a trace writer with room for 8192 pending events.
+     *
+     * @param out Destination of the trace, e.g. System.out or a FileWriter.
+     */
+    public AsyncTraceWriter(Appendable out) {
+        this(out, 8192);
+    }
+
+    /**
+     * Create a trace writer.
+     *
+     * @param out      Destination of the trace, e.g. System.out or a FileWriter.
+     * @param capacity Number of events which can be pending at once. Rounded up to a power of two.
+     */
+    public AsyncTraceWriter(Appendable out, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1.");
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        this.out = out;
+        this.mask = size - 1;
+        this.ticks = new long[size];
+        this.kinds = new int[size];
+        this.channels = new int[size];
+        this.data1s = new int[size];
+        this.data2s = new int[size];
+        this.metaData = new byte[size][];
+
+        writerThread = new Thread(this::drain, "midi-trace-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void noteOn(long tick, int channel, int key, int velocity) {
+        publish(NOTE_ON, tick, channel, key, velocity, null);
+    }
+
+    @Override
+    public void noteOff(long tick, int channel, int key) {
+        publish(NOTE_OFF, tick, channel, key, 0, null);
+    }
+
+    @Override
+    public void channelMessage(long tick, int channel, int command, int data1, int data2) {
+        publish(CHANNEL_MESSAGE, tick, channel, command, data1, null);
+    }
+
+    @Override
+    public void metaMessage(long tick, int type, byte[] data) {
+        publish(META_MESSAGE, tick, 0, type, 0, data);
+    }
+
+    private void publish(int kind, long tick, int channel, int data1, int data2, byte[] data) {
+        long seq = head.get();
+
+        // wait for the writer to free a slot
+        while (seq - tail.get() > mask) {
+            if (!writerThread.isAlive()) {
+                // nothing will ever free one, so drop the event rather than hang the parser
+                return;
+            }
+
+            LockSupport.parkNanos(1000);
+        }
+
+        int slot = (int) seq & mask;
+        kinds[slot] = kind;
+        ticks[slot] = tick;
+        channels[slot] = channel;
+        data1s[slot] = data1;
+        data2s[slot] = data2;
+        metaData[slot] = data;
+
+        // publishes the slot contents to the writer thread
+        head.lazySet(seq + 1);
+    }
+
+    /**
+     * Writer thread loop: format events until closed and fully drained.
+     * An event which cannot be formatted is written as a malformed event, so the loop never stops early.
+     */
+    private void drain() {
+        StringBuilder line = new StringBuilder();
+
+        while (true) {
+            long seq = tail.get();
+            // read closed before head, so every event published before close() is seen
+            boolean finished = closed;
+
+            if (seq == head.get()) {
+                if (finished) {
+                    return;
+                }
+
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            int slot = (int) seq & mask;
+            line.setLength(0);
+
+            try {
+                format(line, slot);
+            } catch (RuntimeException e) {
+                // e.g. a meta message too short for its type; trace it and carry on
+                line.setLength(0);
+                line.append('@').append(ticks[slot]).append(" Malformed event: ").append(e);
+            }
+
+            metaData[slot] = null;
+            tail.lazySet(seq + 1);
+
+            if (writeError == null) {
+                try {
+                    out.append(line).append('\n');
+                } catch (IOException e) {
+                    writeError = e;
+                }
+            }
+        }
+    }
+
+    private void format(StringBuilder line, int slot) {
+        line.append('@').append(ticks[slot]).append(' ');
+
+        int key = data1s[slot];
+        switch (kinds[slot]) {
+            case NOTE_ON -> line.append("Channel: ").append(channels[slot]).append(" Note on, ")
+                    .append(MidiFileParser.NOTE_NAMES[key % 12]).append(key / 12 - 1)
+                    .append(" key=").append(key).append(" velocity: ").append(data2s[slot]);
+            case NOTE_OFF -> line.append("Channel: ").append(channels[slot]).append(" Note off, ")
+                    .append(MidiFileParser.NOTE_NAMES[key % 12]).append(key / 12 - 1)
+                    .append(" key=").append(key);
+            case CHANNEL_MESSAGE -> line.append("Channel: ").append(channels[slot]).append(" Command: ").append(key);
+            default -> formatMeta(line, key, metaData[slot]);
+        }
+    }
+
+    private void formatMeta(StringBuilder line, int type, byte[] data) {
+        switch (type) {
+            case MidiFileParser.TEMPO_MARKING ->
+                    line.append("Tempo marking: ").append(MidiFileParser.tempoToBpm(data)).append(" bpm");
+            case MidiFileParser.TIME_SIGNATURE ->
+                    line.append("Time signature: ").append(data[0] & 0xFF).append('/').append(1 << (data[1] & 0xFF));
+            case MidiFileParser.KEY_SIGNATURE -> {
+                // number of sharps (positive) or flats (negative)
+                int accidentals = data[0];
+
+                if (accidentals > 7 || accidentals < -7) {
+                    line.append("Unable to determine key signature");
+                } else {
+                    line.append("Key signature: ")
+                            .append(new KeySignature(Math.abs(accidentals), accidentals > 0, data[1] == 0).getKey());
+                }
+            }
+            case MidiFileParser.TRACK_NAME -> line.append("Track name: ").append(text(data));
+            case MidiFileParser.CHANNEL_PREFIX -> line.append("Channel prefix: ").append(data[0]);
+            case MidiFileParser.END_OF_TRACK -> line.append("End of track.");
+            case MidiFileParser.COPYRIGHT_NOTICE -> line.append("Copyright notice: ").append(text(data));
+            case MidiFileParser.INSTRUMENT_NAME -> line.append("Instrument name: ").append(text(data));
+            case MidiFileParser.SEQUENCE_SPECIFIER -> line.append("<sequence specifier>");
+            default -> line.append("Unhandled meta message type ").append(Integer.toHexString(type));
+        }
+    }
+
+    private static String text(byte[] data) {
+        return MidiFileParser.decimalToString(MidiFileParser.signedToUnsignedBytes(data));
+    }
+
+    /**
+     * Write out every pending event and stop the writer thread.
+     *
+     * @throws IOException If writing the trace failed at any point.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writerThread);
+
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (writeError != null) {
+            throw writeError;
+        }
+
+        if (out instanceof Flushable f) {
+            f.flush();
+        }
+    }
+}
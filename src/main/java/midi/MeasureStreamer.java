@@ -0,0 +1,286 @@
+package midi;
+
+import music.pitch.BasicNote;
+import music.play.Measure;
+import music.play.TimeSignature;
+import music.play.Voice;
+import music.rhythm.Duration;
+import music.rhythm.Rest;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Turns a tick ordered stream of MIDI events into Measures, handing each one on as soon as it is complete.
+ * A measure is complete once the stream has passed its closing bar line and every note starting
+ * in it has ended, so only the notes sounding across the current bar lines are held in memory.
+ * <p>
+ * Notes are assigned to voices by a VoiceAllocator exactly as MidiFileParser does for a whole Staff.
+ * Silent voices are filled with rests up to each bar line.
+ *
+ * @author reedt
+ */
+class MeasureStreamer implements MidiEventHandler {
+    /**
+     * Notes starting at the same tick, highest first.
+     */
+    private static class OnsetGroup {
+        final long tick;
+        final List<MidiFileParser.MidiNote> notes = new ArrayList<>();
+        /**
+         * Number of notes in this group which have not ended yet.
+         */
+        int open;
+
+        OnsetGroup(long tick) {
+            this.tick = tick;
+        }
+    }
+
+    /**
+     * A note which knows the group it started in.
+     */
+    private static class StreamNote extends MidiFileParser.MidiNote {
+        final OnsetGroup group;
+
+        StreamNote(long tickStart, OnsetGroup group, int key) {
+            super(tickStart, 0, MidiFileParser.noteForKey(key));
+            this.group = group;
+        }
+    }
+
+    /**
+     * A time signature which takes effect at the first bar line at or after its tick.
+     */
+    private static class TimeSignatureChange {
+        final long tick;
+        final TimeSignature timeSignature;
+
+        TimeSignatureChange(long tick, TimeSignature timeSignature) {
+            this.tick = tick;
+            this.timeSignature = timeSignature;
+        }
+    }
+
+    private final Consumer<Measure> sink;
+    private final ParseEventListener listener;
+
+    private float resolution;
+    private TickQuantizer quantizer;
+
+    // reused to hold the rests filling a gap
+    private Duration[] restBuffer = new Duration[16];
+    private TimeSignature timeSignature = new TimeSignature(4, TimeSignature.DenominatorChoices._4);
+    private final ArrayDeque<TimeSignatureChange> timeSignatureChanges = new ArrayDeque<>();
+
+    private final ArrayDeque<OnsetGroup> pending = new ArrayDeque<>();
+    private ActiveNotes<StreamNote> activeNotes;
+
+    private final VoiceAllocator allocator = new VoiceAllocator(1);
+    /**
+     * Tick at which each voice's last note or rest ends.
+     */
+    private long[] voiceTimes = new long[4];
+    /**
+     * Notes and rests placed in each voice since the last measure was emitted.
+     */
+    private final List<List<BasicNote>> voiceNotes = new ArrayList<>();
+
+    private long measureStart;
+    private int measureNumber = 1;
+
+    /**
+     * @param sink     Receives each measure once it is complete.
+     * @param listener Told about every parsed event.
+     */
+    MeasureStreamer(Consumer<Measure> sink, ParseEventListener listener) {
+        this.sink = sink;
+        this.listener = listener;
+
+        // primary voice
+        voiceNotes.add(new ArrayList<>());
+    }
+
+    @Override
+    public void header(float divisionType, int fileResolution) throws InvalidMidiDataException {
+        if (divisionType != Sequence.PPQ) {
+            throw new InvalidMidiDataException("Can't parse this MIDI format into notes (SMPTE timing).");
+        }
+
+        resolution = fileResolution;
+        quantizer = TickQuantizer.forResolution(fileResolution);
+        activeNotes = new ActiveNotes<>(quantizer);
+    }
+
+    @Override
+    public void channelMessage(long tick, int command, int channel, int data1, int data2) {
+        if (command == ShortMessage.NOTE_ON && data2 > 0) {
+            listener.noteOn(tick, channel, data1, data2);
+            noteOn(tick, channel, data1);
+        } else if (command == ShortMessage.NOTE_ON || command == ShortMessage.NOTE_OFF) {
+            listener.noteOff(tick, channel, data1);
+            StreamNote n = activeNotes.end(tick, channel, data1);
+
+            if (n != null) {
+                n.group.open--;
+            }
+        } else {
+            listener.channelMessage(tick, channel, command, data1, data2);
+        }
+
+        emitCompleteMeasures(tick, false);
+    }
+
+    @Override
+    public void metaMessage(long tick, int type, byte[] data) {
+        listener.metaMessage(tick, type, data);
+
+        if (type == MidiFileParser.TIME_SIGNATURE) {
+            int numerator = data[0] & 0xFF;
+            TimeSignature.DenominatorChoices denominator = TimeSignature.DenominatorChoices.getByInt(data[1] & 0xFF);
+
+            // a bar of no length could never be completed, so such time signatures are ignored
+            if (numerator > 0 && denominator != null) {
+                timeSignatureChanges.add(new TimeSignatureChange(tick, new TimeSignature(numerator, denominator)));
+            }
+        }
+
+        emitCompleteMeasures(tick, false);
+    }
+
+    /**
+     * Called after the last event. Ends any notes still sounding and emits the remaining measures.
+     */
+    void finish() {
+        // notes never released end where they start
+        activeNotes.endAll(n -> n.group.open--);
+
+        emitCompleteMeasures(Long.MAX_VALUE, true);
+    }
+
+    private void noteOn(long tick, int channel, int key) {
+        OnsetGroup group = pending.peekLast();
+        if (group == null || group.tick != tick) {
+            group = new OnsetGroup(tick);
+            pending.addLast(group);
+        }
+
+        StreamNote n = new StreamNote(tick, group, key);
+        MidiFileParser.insertByPitch(group.notes, n);
+        group.open++;
+
+        activeNotes.start(channel, key, n);
+    }
+
+    /**
+     * Emit every measure which can no longer change.
+     *
+     * @param streamTick Tick of the latest event. No note can start before it any more.
+     * @param finished   True once the stream has ended.
+     */
+    private void emitCompleteMeasures(long streamTick, boolean finished) {
+        while (true) {
+            applyTimeSignatureChanges();
+            long measureEnd = measureStart + barTicks();
+
+            if (!finished && streamTick < measureEnd) {
+                // notes may still start in this measure
+                return;
+            }
+
+            // place every group starting in this measure, in order, once all its notes have ended
+            while (!pending.isEmpty() && pending.peekFirst().tick < measureEnd) {
+                if (pending.peekFirst().open > 0) {
+                    return;
+                }
+
+                place(pending.pollFirst());
+            }
+
+            long lastVoiceTime = 0;
+            for (int i = 0; i < voiceNotes.size(); i++) {
+                lastVoiceTime = Math.max(lastVoiceTime, voiceTimes[i]);
+            }
+
+            if (finished && pending.isEmpty() && measureStart >= lastVoiceTime) {
+                return;
+            }
+
+            // the final measure is not padded past the end of the music
+            emitMeasure(measureEnd, finished && pending.isEmpty() ? Math.min(measureEnd, lastVoiceTime) : measureEnd);
+        }
+    }
+
+    private void applyTimeSignatureChanges() {
+        while (!timeSignatureChanges.isEmpty() && timeSignatureChanges.peekFirst().tick <= measureStart) {
+            timeSignature = timeSignatureChanges.pollFirst().timeSignature;
+        }
+    }
+
+    private long barTicks() {
+        // at least a tick, even for a short bar at a coarse resolution, so every bar ends
+        return Math.max((long) (resolution * 4 * timeSignature.getNumerator() / timeSignature.getDenominator()), 1);
+    }
+
+    private void place(OnsetGroup group) {
+        for (int i = 0; i < group.notes.size(); i++) {
+            MidiFileParser.MidiNote n = group.notes.get(i);
+            int v = allocator.allocate(i, n.tickStart, n.tickEnd);
+
+            if (v == voiceNotes.size()) {
+                // every voice is sounding, so start a new one at this bar line
+                if (v == voiceTimes.length) {
+                    voiceTimes = Arrays.copyOf(voiceTimes, v * 2);
+                }
+                voiceNotes.add(new ArrayList<>());
+                voiceTimes[v] = measureStart;
+            }
+
+            addRests(voiceNotes.get(v), n.tickStart - voiceTimes[v]);
+            voiceNotes.get(v).add(n.note);
+            voiceTimes[v] = n.tickEnd;
+        }
+    }
+
+    private void emitMeasure(long measureEnd, long padTo) {
+        List<Voice> voices = new ArrayList<>(voiceNotes.size());
+
+        for (int i = 0; i < voiceNotes.size(); i++) {
+            if (voiceTimes[i] < padTo) {
+                addRests(voiceNotes.get(i), padTo - voiceTimes[i]);
+                voiceTimes[i] = padTo;
+            }
+
+            voices.add(new Voice(voiceNotes.get(i), i));
+            voiceNotes.set(i, new ArrayList<>());
+        }
+
+        sink.accept(new Measure(measureNumber, timeSignature, voices));
+
+        measureNumber++;
+        measureStart = measureEnd;
+    }
+
+    /**
+     * Fill a gap with the largest rests which fit, whole notes first.
+     */
+    private void addRests(List<BasicNote> notes, long ticks) {
+        int count = quantizer.restCount(ticks);
+
+        if (count > restBuffer.length) {
+            restBuffer = new Duration[Math.max(count, restBuffer.length * 2)];
+        }
+
+        quantizer.decompose(ticks, restBuffer, 0);
+
+        for (int i = 0; i < count; i++) {
+            notes.add(new Rest(restBuffer[i]));
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package midi;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.Sequence;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a Standard MIDI File straight out of a memory-mapped buffer, decoding MThd/MTrk chunks,
+ * variable-length delta times and running status, and hands each event to a MidiEventHandler.
+ * Each track chunk is decoded on its own fork-join task, then the tracks are merged by tick.
+ * Unlike MidiSystem.getSequence, no MidiEvent or MidiMessage objects are created; only meta event
+ * payloads are copied out of the buffer.
+ * <p>
+ * Each track stops at its End of Track event, as in javax.sound.midi. System exclusive events are skipped.
+ *
+ * @author reedt
+ */
+class MidiChunkReader {
+    private static final int MTHD = 0x4d546864;
+    private static final int MTRK = 0x4d54726b;
+
+    private static final int META = 0xff;
+    private static final int SYSEX = 0xf0;
+    private static final int SYSEX_ESCAPE = 0xf7;
+    private static final int END_OF_TRACK = 0x2f;
+
+    private MidiChunkReader() {
+    }
+
+    /**
+     * Map the given file into memory and feed its events to the handler.
+     *
+     * @param f       A .mid file.
+     * @param handler Receiver of the file's events.
+     * @throws InvalidMidiDataException If the file is not a valid Standard MIDI File.
+     * @throws IOException              If a file reading error occurs.
+     */
+    static void read(File f, MidiEventHandler handler) throws InvalidMidiDataException, IOException {
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), handler);
+        }
+    }
+
+    /**
+     * Feed the events of a Standard MIDI File held in a buffer to the handler.
+     * Track chunks are decoded concurrently, then merged by tick.
+     *
+     * @param buf     Buffer positioned at the start of the file.
+     * @param handler Receiver of the file's events.
+     * @throws InvalidMidiDataException If the buffer does not hold a valid Standard MIDI File.
+     */
+    static void read(ByteBuffer buf, MidiEventHandler handler) throws InvalidMidiDataException {
+        List<ByteBuffer> trackChunks = new ArrayList<>();
+
+        try {
+            if (buf.getInt() != MTHD) {
+                throw new InvalidMidiDataException("Not a Standard MIDI File (missing MThd chunk).");
+            }
+
+            int headerLength = buf.getInt();
+
+            if (headerLength < 6) {
+                throw new InvalidMidiDataException("Invalid MThd chunk length " + headerLength + ".");
+            }
+
+            int headerEnd = buf.position() + headerLength;
+            // format is not needed, every track is read regardless
+            buf.getShort();
+            int numTracks = buf.getShort() & 0xffff;
+            short division = buf.getShort();
+            buf.position(headerEnd);
+
+            if (division < 0) {
+                // SMPTE: upper byte is negative frames per second, lower byte ticks per frame
+                handler.header(smpteDivisionType(-(division >> 8)), division & 0xff);
+            } else {
+                handler.header(Sequence.PPQ, division);
+            }
+
+            // find the track chunks, skipping unknown chunks
+            while (trackChunks.size() < numTracks && buf.remaining() >= 8) {
+                int chunkType = buf.getInt();
+                int chunkLength = buf.getInt();
+
+                if (chunkLength < 0) {
+                    throw new InvalidMidiDataException("Invalid chunk length " + chunkLength + " at offset "
+                            + (buf.position() - 4) + ".");
+                }
+
+                // a truncated last chunk is read as far as it goes
+                chunkLength = Math.min(chunkLength, buf.remaining());
+
+                if (chunkType == MTRK) {
+                    trackChunks.add(buf.slice(buf.position(), chunkLength));
+                }
+
+                buf.position(buf.position() + chunkLength);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new InvalidMidiDataException("Unexpected end of MIDI file.");
+        }
+
+        TrackEvents[] tracks;
+        try {
+            tracks = trackChunks.parallelStream().map(MidiChunkReader::readTrack).toArray(TrackEvents[]::new);
+        } catch (InvalidTrackException e) {
+            throw e.getCause();
+        }
+
+        TrackEvents.merge(tracks, handler);
+    }
+
+    /**
+     * Decode one MTrk chunk, stopping at its End of Track event.
+     *
+     * @param buf The chunk's contents.
+     * @return The decoded events.
+     */
+    private static TrackEvents readTrack(ByteBuffer buf) {
+        TrackEvents events = new TrackEvents();
+        long tick = 0;
+        int runningStatus = -1;
+
+        try {
+            while (buf.hasRemaining()) {
+                tick += readVariableLength(buf);
+
+                int status = buf.get() & 0xff;
+                int data1;
+
+                if (status < 0x80) {
+                    // running status: the byte just read is the first data byte
+                    if (runningStatus == -1) {
+                        throw new InvalidMidiDataException("Missing status byte at offset " + (buf.position() - 1) + ".");
+                    }
+
+                    data1 = status;
+                    status = runningStatus;
+                } else if (status < 0xf0) {
+                    runningStatus = status;
+                    data1 = buf.get() & 0xff;
+                } else if (status == META) {
+                    int type = buf.get() & 0xff;
+                    byte[] data = new byte[readLength(buf)];
+                    buf.get(data);
+
+                    events.addMetaMessage(tick, type, data);
+
+                    if (type == END_OF_TRACK) {
+                        break;
+                    }
+                    continue;
+                } else if (status == SYSEX || status == SYSEX_ESCAPE) {
+                    int length = readLength(buf);
+                    buf.position(buf.position() + length);
+                    continue;
+                } else {
+                    throw new InvalidMidiDataException("Invalid status byte " + status + " at offset "
+                            + (buf.position() - 1) + ".");
+                }
+
+                int data2 = 0;
+                int command = status & 0xf0;
+
+                // program change and channel pressure carry a single data byte
+                if (command != 0xc0 && command != 0xd0) {
+                    data2 = buf.get() & 0xff;
+                }
+
+                events.addChannelMessage(tick, status, data1, data2);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new InvalidTrackException(new InvalidMidiDataException("Unexpected end of MIDI track."));
+        } catch (InvalidMidiDataException e) {
+            throw new InvalidTrackException(e);
+        }
+
+        return events;
+    }
+
+    /**
+     * Carries an InvalidMidiDataException out of a track being decoded on another thread.
+     */
+    private static class InvalidTrackException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        InvalidTrackException(InvalidMidiDataException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized InvalidMidiDataException getCause() {
+            return (InvalidMidiDataException) super.getCause();
+        }
+    }
+
+    /**
+     * Reads the length of a meta or SysEx event's data, which must fit in what is left of the track, so a damaged
+     * length cannot allocate more than the file holds.
+     */
+    private static int readLength(ByteBuffer buf) throws InvalidMidiDataException {
+        int length = readVariableLength(buf);
+
+        if (length > buf.remaining()) {
+            throw new InvalidMidiDataException("Event length " + length + " at offset " + buf.position()
+                    + " runs past the end of the track.");
+        }
+
+        return length;
+    }
+
+    /**
+     * Reads a variable-length quantity: 7 bits per byte, most significant first,
+     * with the high bit set on every byte except the last.
+     */
+    private static int readVariableLength(ByteBuffer buf) throws InvalidMidiDataException {
+        int value = 0;
+
+        // at most 4 bytes are allowed
+        for (int i = 0; i < 4; i++) {
+            int b = buf.get() & 0xff;
+            value = (value << 7) | (b & 0x7f);
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new InvalidMidiDataException("Variable-length quantity too long at offset " + buf.position() + ".");
+    }
+
+    private static float smpteDivisionType(int framesPerSecond) throws InvalidMidiDataException {
+        return switch (framesPerSecond) {
+            case 24 -> Sequence.SMPTE_24;
+            case 25 -> Sequence.SMPTE_25;
+            case 29 -> Sequence.SMPTE_30DROP;
+            case 30 -> Sequence.SMPTE_30;
+            default -> throw new InvalidMidiDataException("Invalid SMPTE frame rate " + framesPerSecond + ".");
+        };
+    }
+}
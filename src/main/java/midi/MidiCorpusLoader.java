@@ -0,0 +1,182 @@
+package midi;
+
+import music.pitch.BasicNote;
+import music.play.Staff;
+import music.play.Voice;
+import music.rhythm.Rest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Parses every MIDI file under a directory tree concurrently, handing each resulting Staff to a consumer
+ * as soon as it is ready. A file which fails to parse is recorded in the Report and does not stop the batch.
+ * <p>
+ * Every file gets its own MidiFileParser, since a parser keeps the state of the file it is reading.
+ *
+ * @author reedt
+ */
+public class MidiCorpusLoader {
+    private final int concurrency;
+    private final MidiFileParser.ReadMode readMode;
+    private final StaffCache cache;
+
+    /**
+     * Outcome of loading a corpus.
+     */
+    public static class Report {
+        public final long files;
+        public final long notes;
+        public final long elapsedNanos;
+        /**
+         * Files which could not be parsed, and why.
+         */
+        public final Map<Path, Exception> failures;
+
+        private Report(long files, long notes, long elapsedNanos, Map<Path, Exception> failures) {
+            this.files = files;
+            this.notes = notes;
+            this.elapsedNanos = elapsedNanos;
+            this.failures = failures;
+        }
+
+        public double filesPerSecond() {
+            return files / (elapsedNanos / 1e9);
+        }
+
+        public double notesPerSecond() {
+            return notes / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Parsed %d files (%d notes) in %d ms: %.1f files/sec, %.0f notes/sec, %d failed",
+                    files, notes, elapsedNanos / 1_000_000, filesPerSecond(), notesPerSecond(), failures.size());
+        }
+    }
+
+    /**
+     * Create a loader which parses up to the given number of files at once.
+     *
+     * @param concurrency Maximum number of files being parsed at the same time.
+     * @param readMode    How each file is read.
+     */
+    public MidiCorpusLoader(int concurrency, MidiFileParser.ReadMode readMode) {
+        this(concurrency, readMode, null);
+    }
+
+    /**
+     * Create a loader which parses up to the given number of files at once, loading files parsed before from a cache.
+     *
+     * @param concurrency Maximum number of files being parsed at the same time.
+     * @param readMode    How each file is read.
+     * @param cache       Staffs parsed before, shared by every parsing thread.
+     */
+    public MidiCorpusLoader(int concurrency, MidiFileParser.ReadMode readMode, StaffCache cache) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1.");
+        }
+
+        this.concurrency = concurrency;
+        this.readMode = readMode;
+        this.cache = cache;
+    }
+
+    /**
+     * Create a loader which parses one file per available processor at once, reading files from a memory-mapped buffer.
+     */
+    public MidiCorpusLoader() {
+        this(Runtime.getRuntime().availableProcessors(), MidiFileParser.ReadMode.MAPPED);
+    }
+
+    /**
+     * Parse every .mid or .midi file under root.
+     * The consumer is called from the parsing threads, so it must be thread safe.
+     *
+     * @param root     Directory to walk.
+     * @param consumer Receives each file and the Staff parsed from it.
+     * @return Statistics for the batch, including every file which failed to parse.
+     * @throws IOException          If the directory tree cannot be walked.
+     * @throws InterruptedException If interrupted while waiting for the batch to finish.
+     */
+    public Report load(Path root, BiConsumer<Path, Staff> consumer) throws IOException, InterruptedException {
+        AtomicLong files = new AtomicLong();
+        AtomicLong notes = new AtomicLong();
+        Map<Path, Exception> failures = new ConcurrentHashMap<>();
+
+        // a fixed pool bounds how many files are parsed, and so held in memory, at once
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.filter(MidiCorpusLoader::isMidiFile).forEach(path -> pool.execute(() -> {
+                try {
+                    Staff staff = new MidiFileParser(readMode, ParseEventListener.NONE, cache).loadAndParseFile(path.toFile());
+                    long count = countNotes(staff);
+
+                    consumer.accept(path, staff);
+
+                    // only counted once the consumer has taken it, so a file is never both parsed and failed
+                    files.incrementAndGet();
+                    notes.addAndGet(count);
+                } catch (Exception e) {
+                    failures.put(path, e);
+                }
+            }));
+        } finally {
+            // wait even if walking the tree failed, so no parsing thread outlives the call
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        return new Report(files.get(), notes.get(), System.nanoTime() - start, Collections.unmodifiableMap(failures));
+    }
+
+    static boolean isMidiFile(Path p) {
+        // a filesystem root has no file name
+        if (p.getFileName() == null) {
+            return false;
+        }
+
+        String name = p.getFileName().toString().toLowerCase();
+
+        return Files.isRegularFile(p) && (name.endsWith(".mid") || name.endsWith(".midi"));
+    }
+
+    /**
+     * @return The number of sounding notes, excluding rests, in the staff.
+     */
+    private static long countNotes(Staff staff) {
+        long count = 0;
+
+        for (Voice v : staff.voices) {
+            for (BasicNote n : v.melody) {
+                if (!(n instanceof Rest)) {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path root = Paths.get(args.length > 0 ? args[0] : "bin/midifiles");
+
+        Report report = new MidiCorpusLoader().load(root, (path, staff) -> { });
+
+        System.out.println(report);
+        report.failures.forEach((path, e) -> System.out.println(path + ": " + e));
+    }
+}
@@ -0,0 +1,41 @@
+package midi;
+
+import javax.sound.midi.InvalidMidiDataException;
+
+/**
+ * Receives the contents of a MIDI file one event at a time, with all tracks merged in tick order.
+ * Implemented by MidiFileParser so it can be fed either by a javax.sound.midi.Sequence
+ * or directly by a MidiChunkReader.
+ *
+ * @author reedt
+ */
+interface MidiEventHandler {
+    /**
+     * Called once, before any track.
+     *
+     * @param divisionType The division type, one of the Sequence.PPQ or Sequence.SMPTE_* constants.
+     * @param resolution   Ticks per quarter note for PPQ, ticks per frame for SMPTE.
+     * @throws InvalidMidiDataException If the handler cannot process files of this division type.
+     */
+    void header(float divisionType, int resolution) throws InvalidMidiDataException;
+
+    /**
+     * A channel voice or mode message.
+     *
+     * @param tick    Absolute tick time of the event.
+     * @param command Status byte with the channel stripped, e.g. ShortMessage.NOTE_ON.
+     * @param channel Channel 0-15.
+     * @param data1   First data byte.
+     * @param data2   Second data byte, or 0 for messages which only carry one.
+     */
+    void channelMessage(long tick, int command, int channel, int data1, int data2);
+
+    /**
+     * A meta event.
+     *
+     * @param tick Absolute tick time of the event.
+     * @param type Meta event type.
+     * @param data Meta event payload.
+     */
+    void metaMessage(long tick, int type, byte[] data);
+}
@@ -1,18 +1,23 @@
 package midi;
 
 import music.pitch.*;
+import music.play.Measure;
 import music.play.Staff;
-import music.play.Tempo;
+import music.play.TempoMap;
 import music.play.TimeSignature;
 import music.play.Voice;
-import music.play.key.Key;
-import music.play.key.KeySignature;
 import music.rhythm.Duration;
 import music.rhythm.Rest;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
 
 import javax.sound.midi.*;
 
@@ -21,22 +26,56 @@ public class MidiFileParser {
     // See https://www.csie.ntu.edu.tw/~r92092/ref/midi/ for information on tracks
 
     // meta flags
-    private static final int CHANNEL_PREFIX = 0x20;
-    private static final int COPYRIGHT_NOTICE = 0x02;
-    private static final int TRACK_NAME = 0x03;
-    private static final int INSTRUMENT_NAME = 0x04;
-    private static final int TEMPO_MARKING = 0x51;
-    private static final int TIME_SIGNATURE = 0x58;
-    private static final int KEY_SIGNATURE = 0x59;
-    private static final int END_OF_TRACK = 0x2f;
-    private static final int SEQUENCE_SPECIFIER = 0x7f;
-
-    private static final String[] NOTE_NAMES = {"C", "C#", "D", "D#", "E", "F", "F#", "G", "G#", "A", "A#", "B"};
+    static final int CHANNEL_PREFIX = 0x20;
+    static final int COPYRIGHT_NOTICE = 0x02;
+    static final int TRACK_NAME = 0x03;
+    static final int INSTRUMENT_NAME = 0x04;
+    static final int TEMPO_MARKING = 0x51;
+    static final int TIME_SIGNATURE = 0x58;
+    static final int KEY_SIGNATURE = 0x59;
+    static final int END_OF_TRACK = 0x2f;
+    static final int SEQUENCE_SPECIFIER = 0x7f;
+
+    static final String[] NOTE_NAMES = {"C", "C#", "D", "D#", "E", "F", "F#", "G", "G#", "A", "A#", "B"};
 
     /**
-     * Represents the current tempo of the parsed file. Defaults to quarter = 120bpm.
+     * Version of the Staffs this parser produces. Bump it whenever parsing the same file would give a different
+     * Staff, so StaffCache entries written by older parsers are not reused.
      */
-    private Tempo fileTempo = new Tempo(120);
+    static final int PARSER_VERSION = 2;
+
+    private static final Duration NO_DURATION = Duration.of(Duration.DurationValue.NULL, false);
+
+    /**
+     * How the bytes of a MIDI file are turned into events.
+     */
+    public enum ReadMode {
+        /**
+         * Load the file into a javax.sound.midi.Sequence first.
+         */
+        SEQUENCE,
+        /**
+         * Decode the file directly out of a memory-mapped buffer, see MidiChunkReader.
+         */
+        MAPPED
+    }
+
+    private final ReadMode readMode;
+
+    /**
+     * Told about every event as it is parsed. Does nothing by default.
+     */
+    private final ParseEventListener listener;
+
+    /**
+     * Staffs parsed before, or null to always parse.
+     */
+    private final StaffCache cache;
+
+    /**
+     * Every tempo marking of the parsed file. Defaults to quarter = 120bpm.
+     */
+    private TempoMap tempoMap;
 
     /**
      * Time signature of the MIDI file. Defaults to 4/4.
@@ -46,6 +85,12 @@ public class MidiFileParser {
      * number of ticks per quarter note in ppq
      */
     private float resolution;
+    private TickQuantizer quantizer;
+
+    /**
+     * Reused to hold the rests filling a gap.
+     */
+    private Duration[] restBuffer = new Duration[16];
 
     /**
      * Dynamically grow based on need for more voices
@@ -55,7 +100,7 @@ public class MidiFileParser {
     /**
      * Container which holds start and end absolute tick time for a Note.
      */
-    private static class MidiNote {
+    static class MidiNote {
         long tickStart;
         long tickEnd;
         Note note;
@@ -76,6 +121,51 @@ public class MidiFileParser {
      * These will be in chronological order and should be traversed back to front.
      */
     private List<Long> allNoteTimes;
+    /**
+     * Notes which have started but not yet ended.
+     */
+    private ActiveNotes<MidiNote> activeNotes;
+
+    /**
+     * Create a parser which reads files through javax.sound.midi.
+     */
+    public MidiFileParser() {
+        this(ReadMode.SEQUENCE);
+    }
+
+    /**
+     * Create a parser which reads files in the given mode.
+     * Both modes produce the same Staff for the same file.
+     *
+     * @param readMode How MIDI files are read.
+     */
+    public MidiFileParser(ReadMode readMode) {
+        this(readMode, ParseEventListener.NONE);
+    }
+
+    /**
+     * Create a parser which reads files in the given mode, reporting each event it parses to a listener.
+     *
+     * @param readMode How MIDI files are read.
+     * @param listener Receives every parsed event, e.g. an AsyncTraceWriter for debugging.
+     */
+    public MidiFileParser(ReadMode readMode, ParseEventListener listener) {
+        this(readMode, listener, null);
+    }
+
+    /**
+     * Create a parser which reads files in the given mode, and first looks for each file in a cache of Staffs
+     * parsed before. The listener is only told about events of files which are not in the cache.
+     *
+     * @param readMode How MIDI files are read.
+     * @param listener Receives every parsed event, e.g. an AsyncTraceWriter for debugging.
+     * @param cache    Staffs parsed before. Files which are parsed are added to it.
+     */
+    public MidiFileParser(ReadMode readMode, ParseEventListener listener, StaffCache cache) {
+        this.readMode = readMode;
+        this.listener = listener;
+        this.cache = cache;
+    }
 
     /**
      * Parse a midi file into a Staff. Attempts to match event time intervals to the closest note value this program can model.
@@ -83,12 +173,86 @@ public class MidiFileParser {
      * @param f A File object representing a .midi file.
      * @return A Staff representing the data in the midi file.
      * @throws InvalidMidiDataException If the file provided is not a valid MIDI file.
-     * @throws IOException              If a file reading error occurs.
+     * @throws IOException              If a file reading error occurs, or the Staff cannot be cached.
      */
     public Staff loadAndParseFile(File f) throws InvalidMidiDataException, IOException {
-        Sequence sequence = MidiSystem.getSequence(f);
+        if (cache == null) {
+            readFile(f, new EventDecoder());
+
+            return midiToStaff();
+        }
+
+        byte[] bytes = Files.readAllBytes(f.toPath());
+        String key = StaffCache.key(bytes, PARSER_VERSION);
+        Staff staff = cache.load(key);
+
+        if (staff == null) {
+            readBytes(bytes, new EventDecoder());
+            staff = midiToStaff();
+            cache.store(key, staff);
+        }
+
+        return staff;
+    }
+
+    /**
+     * Parse a midi file incrementally, publishing each Measure as soon as the parser has read past its closing
+     * bar line and every note starting in it has ended.
+     * Unlike loadAndParseFile, the whole file is never held in memory at once.
+     * <p>
+     * Parsing starts when a subscriber subscribes, and each subscription parses the file again.
+     * Parsing waits for subscribers which fall behind.
+     *
+     * @param f A File object representing a .midi file.
+     * @return A Publisher of the file's measures, in order.
+     */
+    public Flow.Publisher<Measure> streamMeasures(File f) {
+        return subscriber -> {
+            SubmissionPublisher<Measure> publisher = new SubmissionPublisher<>();
+            publisher.subscribe(subscriber);
+
+            ForkJoinPool.commonPool().execute(() -> {
+                try {
+                    MeasureStreamer streamer = new MeasureStreamer(publisher::submit, listener);
+                    readFile(f, streamer);
+                    streamer.finish();
+
+                    publisher.close();
+                } catch (InvalidMidiDataException | IOException | RuntimeException e) {
+                    publisher.closeExceptionally(e);
+                }
+            });
+        };
+    }
+
+    /**
+     * Read a file in this parser's read mode, handing its events to the handler.
+     */
+    private void readFile(File f, MidiEventHandler handler) throws InvalidMidiDataException, IOException {
+        if (readMode == ReadMode.MAPPED) {
+            MidiChunkReader.read(f, handler);
+        } else {
+            parseMidiFile(MidiSystem.getSequence(f), handler);
+        }
+    }
+
+    private void readBytes(byte[] bytes, MidiEventHandler handler) throws InvalidMidiDataException, IOException {
+        if (readMode == ReadMode.MAPPED) {
+            MidiChunkReader.read(ByteBuffer.wrap(bytes), handler);
+        } else {
+            parseMidiFile(MidiSystem.getSequence(new ByteArrayInputStream(bytes)), handler);
+        }
+    }
 
-        parseMidiFile(sequence);
+    /**
+     * Parse an already loaded midi Sequence into a Staff.
+     *
+     * @param sequence The Sequence to parse.
+     * @return A Staff representing the data in the sequence.
+     * @throws InvalidMidiDataException If the sequence is not timed in PPQ.
+     */
+    public Staff parseSequence(Sequence sequence) throws InvalidMidiDataException {
+        parseMidiFile(sequence, new EventDecoder());
 
         return midiToStaff();
     }
@@ -98,272 +262,198 @@ public class MidiFileParser {
      * @return Staff representing the parsed contents of the midi file.
      */
     private Staff midiToStaff() {
+        VoiceAllocator allocator = new VoiceAllocator(voices.size());
         // each voice has a tick time which represents the end of the last note
-        var voiceTimes = new ArrayList<Long>();
-        voiceTimes.add((long) 0);
+        long[] voiceTimes = new long[Math.max(voices.size(), 4)];
 
         for (long eventTime : allNoteTimes) {
             var notesAtTime = noteMap.get(eventTime);
 
             for (int i = 0; i < notesAtTime.size(); i++) {
                 MidiNote n = notesAtTime.get(i);
-                if (voices.size() <= i) {
-                    // we have multiple notes starting on the same time, and voices are not allocated
-                    // add a new one
-                    addVoice(voiceTimes, i, n);
-
-                    voices.get(i).addNote(n.note);
-                    voiceTimes.set(i, n.tickEnd);
-                    continue;
-                }
+                int v = allocator.allocate(i, n.tickStart, n.tickEnd);
 
-                boolean placed = false;
-                for (int j = 0; j < voices.size() && !placed; j++) {
-                    if (voiceTimes.get(j) <= n.tickStart) {
-                        // this voice is active but has no note playing. catch up the voice and add the note
-                        Voice v = voices.get(j);
-                        // check if we need to insert a rest
-                        long restDur = eventTime - voiceTimes.get(j);
-
-                        if (restDur > 0) {
-                            v.addNote(new Rest(ticksToApproxDuration(restDur)));
-                        }
-
-                        v.addNote(n.note);
-                        voiceTimes.set(j, n.tickEnd);
-                        placed = true;
-                    }
-                }
+                if (v == voices.size()) {
+                    // all voices had active notes on them, so we need to add and catch up another
+                    addVoice(v, n);
 
-                // all voices had active notes on them, so we need to add and catch up another
-                if (!placed) {
-                    int vIndex = voices.size();
-                    addVoice(voiceTimes, vIndex, n);
+                    if (v == voiceTimes.length) {
+                        voiceTimes = Arrays.copyOf(voiceTimes, v * 2);
+                    }
+                } else {
+                    // this voice is active but has no note playing. check if we need to insert a rest
+                    long restDur = eventTime - voiceTimes[v];
 
-                    voices.get(vIndex).addNote(n.note);
-                    voiceTimes.set(vIndex, n.tickEnd);
+                    if (restDur > 0) {
+                        voices.get(v).addNote(new Rest(ticksToApproxDuration(restDur)));
+                    }
                 }
+
+                voices.get(v).addNote(n.note);
+                voiceTimes[v] = n.tickEnd;
             }
         }
 
-        return new Staff(fileTempo, timeSignature, voices);
+        return new Staff(tempoMap, timeSignature, voices);
     }
 
-    private void addVoice(List<Long> voiceTimes, int index, MidiNote note) {
+    private void addVoice(int index, MidiNote note) {
         Voice v = new Voice(new ArrayList<>(), index);
         voices.add(v);
 
-        if (note.tickStart > 0) {
-            long ts = note.tickStart;
-            // catch the new voice up with rests
-            while (ts > 0) {
-                Duration d = ticksToApproxDuration(ts);
-                v.addNote(new Rest(d));
-                ts -= durationToTicks(d);
-            }
+        // catch the new voice up with rests
+        int count = quantizer.restCount(note.tickStart);
+
+        if (count > restBuffer.length) {
+            restBuffer = new Duration[Math.max(count, restBuffer.length * 2)];
         }
 
-        voiceTimes.add(note.tickStart);
-    }
+        quantizer.decompose(note.tickStart, restBuffer, 0);
 
-    private void parseMidiFile(Sequence sequence) {
-        if (sequence.getDivisionType() != Sequence.PPQ) {
-            System.err.println("Can't parse this MIDI format into notes!");
-            System.exit(-1);
+        for (int i = 0; i < count; i++) {
+            v.addNote(new Rest(restBuffer[i]));
         }
+    }
 
-        resolution = sequence.getResolution();
-
-        int trackNumber = 0;
+    private void parseMidiFile(Sequence sequence, MidiEventHandler decoder) throws InvalidMidiDataException {
+        decoder.header(sequence.getDivisionType(), sequence.getResolution());
 
-        voices = new ArrayList<>();
-        noteMap = new HashMap<>();
-        allNoteTimes = new ArrayList<>();
+        // tracks are independent until merged, so decode them concurrently
+        TrackEvents.merge(TrackEvents.decode(sequence.getTracks()), decoder);
+    }
 
-        // add primary voice
-        voices.add(new Voice(new ArrayList<>()));
+    /**
+     * Feeds events from either read mode into the parser state.
+     */
+    private class EventDecoder implements MidiEventHandler {
+        @Override
+        public void header(float divisionType, int fileResolution) throws InvalidMidiDataException {
+            if (divisionType != Sequence.PPQ) {
+                throw new InvalidMidiDataException("Can't parse this MIDI format into notes (SMPTE timing).");
+            }
 
-        // loops chunks
-        for (Track track : sequence.getTracks()) {
-            trackNumber++;
-            System.out.println("Track " + trackNumber + ": size = " + track.size());
-            System.out.println();
+            resolution = fileResolution;
+            quantizer = TickQuantizer.forResolution(fileResolution);
+            tempoMap = new TempoMap(fileResolution);
 
-            for (int i = 0; i < track.size(); i++) {
-                MidiEvent event = track.get(i);
-                long tickTime = event.getTick();
-                System.out.print("@" + tickTime + " ");
-                MidiMessage message = event.getMessage();
+            voices = new ArrayList<>();
+            noteMap = new HashMap<>();
+            allNoteTimes = new ArrayList<>();
+            activeNotes = new ActiveNotes<>(quantizer);
 
-                // Channel voice, channel mode, system common, system realtime
-                if (message instanceof ShortMessage sm) {
-                    System.out.print("Channel: " + sm.getChannel() + " ");
+            // add primary voice
+            voices.add(new Voice(new ArrayList<>()));
+        }
 
-                    if (sm.getCommand() == ShortMessage.NOTE_ON) {
-                        processNoteOn2(tickTime, sm);
-                    } else if (sm.getCommand() == ShortMessage.NOTE_OFF) {
-                        processNoteOff2(tickTime, sm);
-                    } else {
-                        System.out.println("Command: " + sm.getCommand());
-                    }
-                } else {
-                    // Meta events
-                    if (message instanceof MetaMessage) {
-                        parseMetaMessage((MetaMessage) message);
-                    } else {
-                        // seems to never happen
-                        System.out.println("Other message: " + message.getClass());
-                    }
-                }
+        @Override
+        public void channelMessage(long tick, int command, int channel, int data1, int data2) {
+            if (command == ShortMessage.NOTE_ON) {
+                processNoteOn2(tick, channel, data1, data2);
+            } else if (command == ShortMessage.NOTE_OFF) {
+                processNoteOff2(tick, channel, data1);
+            } else {
+                listener.channelMessage(tick, channel, command, data1, data2);
             }
+        }
 
-            System.out.println();
+        @Override
+        public void metaMessage(long tick, int type, byte[] data) {
+            listener.metaMessage(tick, type, data);
+            parseMetaMessage(tick, type, data);
         }
     }
 
-    private void processNoteOn2(long eventTickTime, ShortMessage sm) {
-        int key = sm.getData1();
-        int octave = (key / 12) - 1;
-        int note = key % 12;
-        String noteName = NOTE_NAMES[note];
-        int velocity = sm.getData2();
-
+    private void processNoteOn2(long eventTickTime, int channel, int key, int velocity) {
         // some midi files encode a NOTE_OFF event as NOTE_ON with velocity 0
         if (velocity == 0) {
-            processNoteOff2(eventTickTime, sm);
+            processNoteOff2(eventTickTime, channel, key);
             return;
         }
 
-        String noteString = noteName + octave + ":N";
-        Note tmpNote = new Note(noteString);
-
-        if (noteMap.containsKey(eventTickTime)) {
-            // add highest notes to the top of the list if possible
-            var nm = noteMap.get(eventTickTime);
-            boolean placed = false;
+        listener.noteOn(eventTickTime, channel, key, velocity);
 
-            for (int i = 0; i < nm.size(); i++) {
-                if (nm.get(i).note.compareTo(tmpNote) <= 0) {
-                    nm.add(i, new MidiNote(eventTickTime, 0, tmpNote));
-                    placed = true;
-                    break;
-                }
-            }
+        MidiNote midiNote = new MidiNote(eventTickTime, 0, noteForKey(key));
 
-            // place at end of list if not otherwise placed
-            if (!placed) {
-                nm.add(new MidiNote(eventTickTime, 0, tmpNote));
-            }
+        var nm = noteMap.get(eventTickTime);
+        if (nm != null) {
+            insertByPitch(nm, midiNote);
         } else {
             ArrayList<MidiNote> noteArrayList = new ArrayList<>();
-            noteArrayList.add(new MidiNote(eventTickTime, 0, tmpNote));
+            noteArrayList.add(midiNote);
             noteMap.put(eventTickTime, noteArrayList);
-        }
-
-        if (!allNoteTimes.contains(eventTickTime)) {
             allNoteTimes.add(eventTickTime);
         }
 
-        System.out.println("Note on, " + noteName + octave + " key=" + key + " velocity: " + velocity);
+        activeNotes.start(channel, key, midiNote);
     }
 
-    private void processNoteOff2(long eventTickTime, ShortMessage sm) {
-        int key = sm.getData1();
-        int octave = (key / 12) - 1;
-        int note = key % 12;
-        String noteName = NOTE_NAMES[note];
-
-        // Create a note equal to stored one, to get its value
-        String noteString = noteName + octave + ":N";
-        Note temp = new Note(noteString);
-
-        // find the starting event for this note and calculate its duration
-        // move backwards from the current time and "pop" times off to look for the starting event
-
-        ListIterator<Long> iter = allNoteTimes.listIterator(allNoteTimes.size());
-        while (iter.hasPrevious()) {
-            long ett = iter.previous();
-
-            var notes = noteMap.get(ett);
-            for (MidiNote n : notes) {
-                if (n.note.equals(temp)) {
-                    long noteTicks = eventTickTime - ett;
-                    Duration approxDuration = ticksToApproxDuration(noteTicks);
+    /**
+     * Create a Note, with no duration yet, for a MIDI key.
+     *
+     * @param key MIDI key number, middle C = 60.
+     * @return The note, spelled with sharps.
+     */
+    static Note noteForKey(int key) {
+        return Note.fromMidiKey(key, NO_DURATION);
+    }
 
-                    n.note.setDuration(approxDuration);
-                    n.tickEnd = eventTickTime;
-                }
+    /**
+     * Insert a note into the notes starting at the same time, keeping the highest notes at the top of the list.
+     *
+     * @param notesAtTime Notes starting at the same tick, highest first.
+     * @param midiNote    Note to insert.
+     */
+    static void insertByPitch(List<MidiNote> notesAtTime, MidiNote midiNote) {
+        for (int i = 0; i < notesAtTime.size(); i++) {
+            if (notesAtTime.get(i).note.compareTo(midiNote.note) <= 0) {
+                notesAtTime.add(i, midiNote);
+                return;
             }
         }
 
-        System.out.println("Note off, " + noteName + octave + " key=" + key);
-
+        // place at end of list if not otherwise placed
+        notesAtTime.add(midiNote);
     }
 
-    private Duration ticksToApproxDuration(long noteTicks) {
-        double fractionOfQuarterNote = roundDoubleToCleanFraction(noteTicks / resolution);
-        return Duration.getDurationByRatio(new Duration("Q"), fractionOfQuarterNote);
-    }
+    private void processNoteOff2(long eventTickTime, int channel, int key) {
+        listener.noteOff(eventTickTime, channel, key);
 
-    private long durationToTicks(Duration d) {
-        return (long)(d.getDoubleValue() * resolution * 4);
+        // the earliest still sounding note on this channel and key is the one being released
+        activeNotes.end(eventTickTime, channel, key);
     }
 
-    private void parseMetaMessage(MetaMessage message) {
-        byte[] raw = message.getData();
-
-        int[] hexBytes = signedToUnsignedBytes(raw);
+    private Duration ticksToApproxDuration(long noteTicks) {
+        return quantizer.quantize(noteTicks);
+    }
 
-        if (message.getType() == TEMPO_MARKING) {
+    private void parseMetaMessage(long tick, int type, byte[] raw) {
+        if (type == TEMPO_MARKING) {
             // microseconds per quarter note
-            // tempo = tt tt tt
-            int tempo = bigEndianByteArrayToDecimal(raw);
-            // convert to beats per minute
-            int bpm = (int) Math.round(60000000 / (double) tempo);
-            System.out.printf("Tempo marking: %d bpm\n", bpm);
-
-            // save file tempo
-            // only save the first instance, though this might be fragile
-            if (fileTempo.bpm == 120) {
-                fileTempo = new Tempo(bpm);
-            }
-        } else if (message.getType() == TIME_SIGNATURE) {
-            int numerator = hexBytes[0];
-            int denominator = (int) Math.pow(2, hexBytes[1]);
-            // MIDI clock ticks per click
-            int metronomeTicks = hexBytes[2];
-            int thirtySecondNotesPerBeat = hexBytes[3];
-
-            System.out.println("Time signature: " + numerator + "/" + denominator);
-            // update time signature
-            timeSignature = new TimeSignature(numerator, TimeSignature.DenominatorChoices.getByInt(hexBytes[1]));
-        } else if (message.getType() == KEY_SIGNATURE) {
-            boolean major = hexBytes[1] == 0;
-            boolean sharps = hexBytes[0] > 0;
+            tempoMap.addTempo(tick, bigEndianByteArrayToDecimal(raw));
+        } else if (type == TIME_SIGNATURE) {
+            int numerator = raw[0] & 0xFF;
+            // denominator is stored as a power of two
+            int denominatorPower = raw[1] & 0xFF;
 
-            if (hexBytes[0] > 7 || hexBytes[0] < -7) {
-                System.out.println("Unable to determine key signature");
-            } else {
-                Key keySignature = new KeySignature(hexBytes[0], sharps, major).getKey();
-                System.out.println("Key signature: " + keySignature.toString());
-            }
-        } else if (message.getType() == TRACK_NAME) {
-            System.out.println("Track name: " + decimalToString(hexBytes));
-        } else if (message.getType() == CHANNEL_PREFIX) {
-            // Might be unused, if channel info can be extracted from command message status
-        } else if (message.getType() == END_OF_TRACK) {
-            System.out.println("End of track.");
-        } else if (message.getType() == COPYRIGHT_NOTICE) {
-            System.out.println("Copyright notice: " + decimalToString(hexBytes));
-        } else if (message.getType() == INSTRUMENT_NAME) {
-            System.out.println("Instrument name: " + decimalToString(hexBytes));
-        } else if (message.getType() == SEQUENCE_SPECIFIER) {
-            System.out.println("<sequence specifier>");
-        } else {
-            System.out.printf("Unhandled meta message type %x\n", message.getType());
+            // update time signature
+            timeSignature = new TimeSignature(numerator, TimeSignature.DenominatorChoices.getByInt(denominatorPower));
         }
     }
 
+    /**
+     * Converts the payload of a tempo marking meta message to beats per minute.
+     *
+     * @param raw Microseconds per quarter note, as 3 big endian bytes.
+     * @return The tempo in quarter note beats per minute.
+     */
+    static int tempoToBpm(byte[] raw) {
+        // microseconds per quarter note
+        // tempo = tt tt tt
+        int tempo = bigEndianByteArrayToDecimal(raw);
+        // convert to beats per minute
+        return (int) Math.round(60000000 / (double) tempo);
+    }
+
     /**
      * Calculates the length of a tick based on resolution read earlier in the file.
      *
@@ -374,8 +464,7 @@ public class MidiFileParser {
         double tickSize;
 
         if (divisionType == Sequence.PPQ) {
-            System.out.println("Division Type: PPQ");
-            double ticksPerSecond = resolution * (fileTempo.bpm / 60);
+            double ticksPerSecond = resolution * (tempoMap.getTempo(0).bpm / 60);
             tickSize = 1.0 / ticksPerSecond;
         } else {
             double framesPerSecond =
@@ -400,25 +489,30 @@ public class MidiFileParser {
      * @param behind The second voice
      */
     private void catchUpVoices(Voice ahead, Voice behind) {
-        double aheadTime = ahead.getTotalDurationValue();
-        double behindTIme = behind.getTotalDurationValue();
+        long aheadTime = ahead.getTotalTicks();
+        long behindTime = behind.getTotalTicks();
 
-        if (behindTIme >= aheadTime) {
+        if (behindTime >= aheadTime) {
             return;
         }
 
-        double difference = aheadTime - behindTIme;
+        long difference = aheadTime - behindTime;
+        int count = Duration.decomposedLength(difference);
+
+        if (count > restBuffer.length) {
+            restBuffer = new Duration[Math.max(count, restBuffer.length * 2)];
+        }
 
-        Duration[] rests = Duration.generateMultipleDurations(difference);
+        Duration.decompose(difference, restBuffer, 0);
 
-        for (Duration d : rests) {
-            behind.addNote(new Rest(d));
+        for (int i = 0; i < count; i++) {
+            behind.addNote(new Rest(restBuffer[i]));
         }
     }
 
     /* Helper methods for MIDI file parsing */
 
-    private String decimalToString(int[] bytes) {
+    static String decimalToString(int[] bytes) {
         StringBuilder toReturn = new StringBuilder();
 
         for (int rawChar : bytes) {
@@ -428,7 +522,7 @@ public class MidiFileParser {
         return toReturn.toString();
     }
 
-    private int bigEndianByteArrayToDecimal(byte[] in) {
+    static int bigEndianByteArrayToDecimal(byte[] in) {
         int numBytes = in.length;
         int toReturn = 0;
 
@@ -439,7 +533,7 @@ public class MidiFileParser {
         return toReturn;
     }
 
-    private int[] signedToUnsignedBytes(byte[] in) {
+    static int[] signedToUnsignedBytes(byte[] in) {
         int[] toReturn = new int[in.length];
 
         for (int i = 0; i < in.length; i++) {
@@ -449,63 +543,6 @@ public class MidiFileParser {
         return toReturn;
     }
 
-    /**
-     * Rounds fractions up or down to clean intervals, as used in musical notation.
-     * These durations are (with quarter note == 1):
-     * <ol>
-     * <li>Whole (4)</li>
-     * <li>Dotted half (3)</li>
-     * <li>Half (2)</li>
-     * <li>Dotted quarter (1.5)</li>
-     * <li>Quarter (1)</li>
-     * <li>Eighth (0.5)</li>
-     * <li>Dotted eighth (0.75)</li>
-     * <li>Sixteenth (0.25)</li>
-     * <li>Dotted sixteenth (0.1875)</li>
-     * <li>Thirty-second (0.125)</li>
-     * <li>Sixty-fourth (0.0625)</li>
-     * </ol>
-     * <p>
-     * as well as dotted versions of each up to thirty-second note.
-     *
-     * @param d The floating point number to round
-     * @return The floating point fraction in the list closest to d.
-     */
-    private double roundDoubleToCleanFraction(double d) {
-        // Based on max sixty fourth second resolution
-        double[] acceptableFractionsOfQuarterNote = {
-                4, // whole
-                3, // dotted half
-                2, // half
-                1.5, // dotted quarter
-                1, // quarter
-                0.75, // dotted eigth
-                0.5, // eighth
-                0.375, // dotted sixteenth
-                0.25, // sixteenth
-                0.1875, // dotted thirty-second
-                0.125, // thirty-second
-                0.0625, // sixty-fourth
-                0 // too short to count
-        };
-
-        double minDistance = Double.MAX_VALUE;
-
-        for (int i = 0; i < acceptableFractionsOfQuarterNote.length; i++) {
-            double distance = Math.abs(d - acceptableFractionsOfQuarterNote[i]);
-
-            if (distance < minDistance) {
-                minDistance = distance;
-            } else {
-                // found our closest match
-                return acceptableFractionsOfQuarterNote[i - 1];
-            }
-        }
-
-        // The smallest resolution accepted falls through
-        return 0;
-    }
-
     /**
      * Find the index of the max element in the given list.
      *
@@ -531,7 +568,10 @@ public class MidiFileParser {
         File furElise = new File("bin/midifiles/for_elise_by_beethoven.mid");
         File tchaikovskyVC1 = new File("bin/midifiles/tchop35a.mid");
         File test = new File("bin/midifiles/test.txt");
-        Staff f = new MidiFileParser().loadAndParseFile(furElise);
+        Staff f;
+        try (AsyncTraceWriter trace = new AsyncTraceWriter(System.out)) {
+            f = new MidiFileParser(ReadMode.SEQUENCE, trace).loadAndParseFile(furElise);
+        }
 
         System.out.println(f.toString());
         System.out.println(f.getAlignedStaff());
@@ -1,11 +1,14 @@
 package midi;
 
+import music.pitch.BasicNote;
+import music.pitch.MidiPitch;
 import music.pitch.Note;
-import music.pitch.NoteValue;
-import music.pitch.Octave;
-import music.pitch.Pitch;
 import music.play.Tempo;
+import music.play.TempoMap;
+import music.play.ReadableVoice;
+import music.play.key.KeySignature;
 import music.rhythm.Duration;
+import music.rhythm.Rest;
 
 /**
  * @author reedt
@@ -14,34 +17,83 @@ public class MidiUtils {
     private MidiUtils() {
     }
 
+    /**
+     * Key number given to rests by the bulk conversions.
+     */
+    public static final int REST = -1;
+
+    private static final Duration QUARTER = Duration.of(Duration.DurationValue.QUARTER, false);
+
+    /**
+     * @param n A note, not a rest.
+     * @return The MIDI key the note sounds, middle C (C4) = 60. B#4 sounds 72 and Cb4 sounds 59.
+     */
     public static int getMidiNote(Note n) {
-        // C2 == 36
-        // C3 == 48
-        // ...
-        // Middle c (C4) == 60
-
-        int octave = (n.octave.getNumberValue() + 1) * 12;
-
-        // Corner cases
-        if (n.basePitch == NoteValue.B && n.accidental == NoteValue.Accidental.SHARP) {
-            return octave + 12;
-        } else if (n.basePitch == NoteValue.C && n.accidental == NoteValue.Accidental.FLAT) {
-            return (n.octave.getNumberValue() - 2) * 12;
-        } else {
-            int offset = n.pitchValue - 1;
-            return octave + offset;
-        }
+        return MidiPitch.keyOf(n);
     }
 
+    /**
+     * @param midiNote MIDI key number, middle C = 60.
+     * @return A quarter note of the key, spelled with sharps.
+     */
     public static Note getNoteFromMidi(int midiNote) {
-        int octave = midiNote / 12;
+        return Note.fromMidiKey(midiNote, QUARTER);
+    }
 
-        // Convert from midi format to our format with +1
-        int offset = (midiNote % 12) + 1;
+    /**
+     * @param midiNote     MIDI key number, middle C = 60.
+     * @param keySignature Key signature to spell the note in, or null to spell it with sharps.
+     * @return A quarter note of the key, e.g. Bb4 for 70 in F major, and A#4 in E major.
+     */
+    public static Note getNoteFromMidi(int midiNote, KeySignature keySignature) {
+        return MidiPitch.spelled(midiNote, fifths(keySignature)).toNote(QUARTER);
+    }
 
-        Note temp = Pitch.pitchFromPitchValue(offset);
+    /**
+     * Convert every note of a voice to its MIDI key, e.g. before playback or export.
+     *
+     * @param v A voice of notes and rests, e.g. a Voice or a PersistentVoice snapshot.
+     * @return The key of each note, in order, with REST for each rest.
+     * @throws IllegalArgumentException If the voice holds anything else, e.g. a Chord.
+     */
+    public static int[] getMidiNotes(ReadableVoice v) {
+        int[] keys = new int[v.size()];
 
-        return new Note(temp.basePitch, temp.accidental, Octave.octaveFromInteger(octave - 1));
+        for (int i = 0; i < keys.length; i++) {
+            BasicNote b = v.getNote(i);
+
+            if (b instanceof Rest) {
+                keys[i] = REST;
+            } else if (b instanceof Note) {
+                keys[i] = MidiPitch.keyOf((Note) b);
+            } else {
+                throw new IllegalArgumentException("Only notes and rests have a single MIDI key: " + b + ".");
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * Convert MIDI keys to notes, as getNoteFromMidi(int, KeySignature) does for each.
+     *
+     * @param midiNotes    MIDI key numbers, or REST.
+     * @param keySignature Key signature to spell the notes in, or null to spell them with sharps.
+     * @return A quarter note for each key, and a quarter rest for each REST.
+     */
+    public static Note[] getNotesFromMidi(int[] midiNotes, KeySignature keySignature) {
+        int fifths = fifths(keySignature);
+        Note[] notes = new Note[midiNotes.length];
+
+        for (int i = 0; i < notes.length; i++) {
+            notes[i] = midiNotes[i] == REST ? new Rest(QUARTER) : MidiPitch.spelled(midiNotes[i], fifths).toNote(QUARTER);
+        }
+
+        return notes;
+    }
+
+    private static int fifths(KeySignature keySignature) {
+        return keySignature == null ? 0 : keySignature.getFifths();
     }
 
     public static int getDurationMiliseconds(Duration d, Tempo t) {
@@ -51,4 +103,16 @@ public class MidiUtils {
 
         return (int)(ratio * msBeatValue);
     }
+
+    /**
+     * Length of a note in milliseconds, following any tempo changes while it sounds.
+     *
+     * @param d         Duration of the note.
+     * @param startTick Tick the note starts at.
+     * @param tempoMap  Tempo changes of the piece.
+     * @return The note's length, in milliseconds.
+     */
+    public static int getDurationMiliseconds(Duration d, long startTick, TempoMap tempoMap) {
+        return (int)(tempoMap.getDurationMicros(startTick, d) / 1000);
+    }
 }
@@ -0,0 +1,61 @@
+package midi;
+
+/**
+ * Observes the raw events MidiFileParser handles while it parses a file, e.g. for debug tracing.
+ * Every method defaults to doing nothing, and parsers use {@link #NONE} unless given a listener,
+ * so a parse without a listener pays no formatting or output cost.
+ * <p>
+ * Methods are called on the parsing thread, in tick order.
+ *
+ * @author reedt
+ */
+public interface ParseEventListener {
+    /**
+     * Listener which ignores every event.
+     */
+    ParseEventListener NONE = new ParseEventListener() {
+    };
+
+    /**
+     * A note started sounding.
+     *
+     * @param tick     Absolute tick time.
+     * @param channel  Channel 0-15.
+     * @param key      MIDI key number, middle C = 60.
+     * @param velocity Velocity 1-127.
+     */
+    default void noteOn(long tick, int channel, int key, int velocity) {
+    }
+
+    /**
+     * A note stopped sounding, either through NOTE_OFF or NOTE_ON with velocity 0.
+     *
+     * @param tick    Absolute tick time.
+     * @param channel Channel 0-15.
+     * @param key     MIDI key number, middle C = 60.
+     */
+    default void noteOff(long tick, int channel, int key) {
+    }
+
+    /**
+     * A channel message which is not a note event, e.g. a program change. These are ignored by the parser.
+     *
+     * @param tick    Absolute tick time.
+     * @param channel Channel 0-15.
+     * @param command Status byte with the channel stripped.
+     * @param data1   First data byte.
+     * @param data2   Second data byte.
+     */
+    default void channelMessage(long tick, int channel, int command, int data1, int data2) {
+    }
+
+    /**
+     * A meta event.
+     *
+     * @param tick Absolute tick time.
+     * @param type Meta event type.
+     * @param data Meta event payload. Must not be modified.
+     */
+    default void metaMessage(long tick, int type, byte[] data) {
+    }
+}
@@ -2,11 +2,14 @@ package midi;
 
 import music.pitch.BasicNote;
 import music.pitch.Note;
+import music.play.PersistentVoice;
 import music.play.Staff;
 import music.play.Tempo;
+import music.play.TempoMap;
 import music.play.TimeSignature;
 import music.play.Voice;
 import music.play.key.MajorSharpKeys;
+import music.rhythm.Duration;
 import music.rhythm.Rest;
 
 import javax.sound.midi.*;
@@ -79,15 +82,10 @@ public class PlaySoundMidi {
         }
     }
 
-    private void playNote(BasicNote n, Tempo tempo, int channelNumber) {
+    private void playNote(int noteValue, int noteDuration, int channelNumber) {
         int velocity = 50; // Volume
 
-        int noteDuration = MidiUtils.getDurationMiliseconds(n.getDuration(), tempo);
-
-        if (!(n instanceof Rest)) {
-            Note temp = (Note) n;
-            int noteValue = MidiUtils.getMidiNote(temp);
-
+        if (noteValue != MidiUtils.REST) {
             MidiChannel[] channels = synthesizer.getChannels();
             MidiChannel currentChannel = channels[channelNumber];
 
@@ -111,7 +109,7 @@ public class PlaySoundMidi {
     }
 
     private void playStaff(Staff f) throws InterruptedException {
-        Tempo t = f.tempo;
+        TempoMap tempoMap = f.tempoMap;
 
         // Warm up thread sleep
         try {
@@ -124,6 +122,11 @@ public class PlaySoundMidi {
         CountDownLatch countDownLatch = new CountDownLatch(f.voices.size() - 1);
 
         for (Voice v : f.voices) {
+            // the player thread reads its own copy, so editing the staff during playback cannot disturb it;
+            // keys and durations both come from the copy, so they always belong to the same notes
+            PersistentVoice notes = new PersistentVoice(v);
+            int[] keys = MidiUtils.getMidiNotes(notes);
+
             new Thread(() -> {
                 try {
                     countDownLatch.countDown();
@@ -132,8 +135,13 @@ public class PlaySoundMidi {
                     e.printStackTrace();
                 }
 
-                for (BasicNote n : v.melody) {
-                    playNote(n, t, 0);
+                long tick = 0;
+
+                for (int i = 0; i < notes.size(); i++) {
+                    Duration d = notes.getNote(i).getDuration();
+
+                    playNote(keys[i], MidiUtils.getDurationMiliseconds(d, tick, tempoMap), 0);
+                    tick += tempoMap.durationToTicks(d);
                 }
             }).start();
         }
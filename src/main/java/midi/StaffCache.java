@@ -0,0 +1,278 @@
+package midi;
+
+import com.google.common.hash.Hashing;
+import music.pitch.BasicNote;
+import music.pitch.Note;
+import music.pitch.NoteValue;
+import music.pitch.Octave;
+import music.play.Staff;
+import music.play.TempoMap;
+import music.play.TimeSignature;
+import music.play.Voice;
+import music.rhythm.Duration;
+import music.rhythm.Rest;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A directory of Staffs already parsed from MIDI files, so a file seen before is loaded with one sequential read
+ * instead of being parsed and quantized again.
+ * <p>
+ * Entries are keyed by a hash of the MIDI file's bytes and the parser version, so an edited file or a parser which
+ * produces different output never sees a stale Staff. Entries are written to a temporary file and then moved into
+ * place, so several parsers, in this process or others, can share one directory.
+ * <p>
+ * Each entry is a compact binary encoding of the Staff. A rest takes one byte and a note three, plus four for a MIDI index.
+ * Only Staffs made of Notes and Rests with a tempo map and no key signature, as MidiFileParser produces, are stored.
+ *
+ * @author reedt
+ */
+public class StaffCache {
+    private static final int MAGIC = 0x524d5343; // "RMSC"
+    private static final int FORMAT_VERSION = 2;
+    private static final String SUFFIX = ".staff";
+
+    // most voices or notes to make room for before reading them, so a damaged count cannot exhaust memory
+    private static final int MAX_PRESIZE = 1 << 16;
+
+    // layout of a note's first byte
+    private static final int DOT = 1 << 3;
+    private static final int REST = 1 << 4;
+    private static final int HAS_INDEX = 1 << 5;
+    private static final int NO_DURATION = 1 << 6;
+
+    private final Path directory;
+
+    /**
+     * Use a directory as a cache, creating it if needed.
+     *
+     * @param directory Where cached Staffs are kept.
+     * @throws IOException If the directory cannot be created.
+     */
+    public StaffCache(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * Cache key of a MIDI file.
+     *
+     * @param fileBytes     The complete contents of the file.
+     * @param parserVersion Version of the parser which produces the Staff.
+     */
+    static String key(byte[] fileBytes, int parserVersion) {
+        return Hashing.sha256().hashBytes(fileBytes) + "-v" + parserVersion;
+    }
+
+    /**
+     * Load a cached Staff.
+     *
+     * @param key Cache key, see key().
+     * @return The Staff, or null if there is no usable entry for the key.
+     * @throws IOException If the entry exists but cannot be read.
+     */
+    Staff load(String key) throws IOException {
+        byte[] entry;
+
+        try {
+            entry = Files.readAllBytes(entryPath(key));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        try {
+            return read(new DataInputStream(new ByteArrayInputStream(entry)));
+        } catch (EOFException | IllegalArgumentException e) {
+            // truncated or from another format version, so parse the file again
+            return null;
+        }
+    }
+
+    /**
+     * Cache a Staff, replacing any entry with the same key.
+     * Staffs which cannot be encoded are silently not cached.
+     *
+     * @param key   Cache key, see key().
+     * @param staff Staff parsed from the file the key was made from.
+     * @throws IOException If the entry cannot be written.
+     */
+    void store(String key, Staff staff) throws IOException {
+        if (!isCacheable(staff)) {
+            return;
+        }
+
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                write(staff, out);
+            }
+
+            Files.move(temp, entryPath(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    /**
+     * @return True if write() can encode the staff.
+     */
+    static boolean isCacheable(Staff staff) {
+        if (staff.keySignature != null || staff.tempoMap == null || !staff.tempo.equals(staff.tempoMap.getTempo(0))) {
+            return false;
+        }
+
+        for (Voice v : staff.voices) {
+            for (BasicNote b : v.melody) {
+                if (!(b instanceof Note)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    static void write(Staff staff, DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+
+        TempoMap tempoMap = staff.tempoMap;
+        out.writeInt(tempoMap.resolution);
+        out.writeInt(tempoMap.size());
+
+        for (int i = 0; i < tempoMap.size(); i++) {
+            out.writeLong(tempoMap.getSegmentTick(i));
+            out.writeInt(tempoMap.getSegmentMicrosecondsPerQuarter(i));
+        }
+
+        out.writeShort(staff.timeSignature.getNumerator());
+        out.writeShort(staff.timeSignature.getDenominator());
+
+        out.writeInt(staff.voices.size());
+
+        for (Voice v : staff.voices) {
+            out.writeInt(v.getIndex());
+            out.writeInt(v.melody.size());
+
+            for (BasicNote b : v.melody) {
+                Note n = (Note) b;
+                int bits = durationBits(n.getDuration());
+
+                if (n instanceof Rest) {
+                    out.writeByte(bits | REST);
+                } else {
+                    boolean hasIndex = n.getIndex() != -1;
+
+                    out.writeByte(bits | (hasIndex ? HAS_INDEX : 0));
+                    out.writeByte(n.basePitch.ordinal() | n.accidental.ordinal() << 3);
+                    out.writeByte(n.octave.ordinal());
+
+                    if (hasIndex) {
+                        out.writeInt(n.getIndex());
+                    }
+                }
+            }
+        }
+    }
+
+    static Staff read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC || in.readUnsignedByte() != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Not a cached Staff of format version " + FORMAT_VERSION + ".");
+        }
+
+        TempoMap tempoMap = new TempoMap(in.readInt());
+        int tempoCount = in.readInt();
+
+        for (int i = 0; i < tempoCount; i++) {
+            tempoMap.addTempo(in.readLong(), in.readInt());
+        }
+
+        TimeSignature timeSignature = new TimeSignature(in.readUnsignedShort() + "/" + in.readUnsignedShort());
+
+        int voiceCount = readCount(in);
+        List<Voice> voices = new ArrayList<>(Math.min(voiceCount, MAX_PRESIZE));
+
+        NoteValue[] noteValues = NoteValue.values();
+        NoteValue.Accidental[] accidentals = NoteValue.Accidental.values();
+        Octave[] octaves = Octave.values();
+
+        for (int i = 0; i < voiceCount; i++) {
+            int index = in.readInt();
+            int size = readCount(in);
+            List<BasicNote> melody = new ArrayList<>(Math.min(size, MAX_PRESIZE));
+
+            for (int j = 0; j < size; j++) {
+                int bits = in.readUnsignedByte();
+                Duration d = readDuration(bits);
+
+                if ((bits & REST) != 0) {
+                    melody.add(new Rest(d));
+                } else {
+                    int pitch = in.readUnsignedByte();
+                    Octave octave = lookup(octaves, in.readUnsignedByte(), "octave");
+                    int noteIndex = (bits & HAS_INDEX) != 0 ? in.readInt() : -1;
+
+                    melody.add(new Note(lookup(noteValues, pitch & 0x7, "note value"),
+                            lookup(accidentals, pitch >> 3, "accidental"), octave, d, noteIndex));
+                }
+            }
+
+            voices.add(new Voice(melody, index));
+        }
+
+        return new Staff(tempoMap, timeSignature, voices);
+    }
+
+    /**
+     * Reads a count of voices or notes, which a damaged entry could make negative.
+     */
+    private static int readCount(DataInput in) throws IOException {
+        int count = in.readInt();
+
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative count " + count + " in cached Staff.");
+        }
+
+        return count;
+    }
+
+    /**
+     * Looks up an enum constant by ordinal, which a damaged entry could put out of range.
+     */
+    private static <T> T lookup(T[] values, int ordinal, String what) {
+        if (ordinal >= values.length) {
+            throw new IllegalArgumentException("Invalid " + what + " " + ordinal + " in cached Staff.");
+        }
+
+        return values[ordinal];
+    }
+
+    /**
+     * Packs a Duration into a byte: the note value's ordinal in the low three bits, then the dot.
+     */
+    private static int durationBits(Duration d) {
+        if (d == null) {
+            return NO_DURATION;
+        }
+
+        return d.getValue().ordinal() | (d.isDotted() ? DOT : 0);
+    }
+
+    private static Duration readDuration(int bits) {
+        if ((bits & NO_DURATION) != 0) {
+            return null;
+        }
+
+        return Duration.of(Duration.DurationValue.values()[bits & 0x7], (bits & DOT) != 0);
+    }
+}
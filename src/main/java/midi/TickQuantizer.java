@@ -0,0 +1,224 @@
+package midi;
+
+import music.rhythm.Duration;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rounds tick lengths to the closest Duration this program can model, for one file resolution.
+ * <p>
+ * Every length from zero up to a whole note is rounded once, when the quantizer is built, into a table indexed by
+ * tick count. Anything longer rounds to a whole note. Quantizers are shared between all files with the same
+ * resolution, so parsing a corpus builds only a handful of tables.
+ *
+ * @author reedt
+ */
+class TickQuantizer {
+    /**
+     * Lengths a note is rounded to, as fractions of a quarter note, longest first.
+     * Based on max sixty fourth note resolution.
+     */
+    private static final double[] ACCEPTABLE_FRACTIONS_OF_QUARTER_NOTE = {
+            4, // whole
+            3, // dotted half
+            2, // half
+            1.5, // dotted quarter
+            1, // quarter
+            0.75, // dotted eigth
+            0.5, // eighth
+            0.375, // dotted sixteenth
+            0.25, // sixteenth
+            0.1875, // dotted thirty-second
+            0.125, // thirty-second
+            0.0625, // sixty-fourth
+            0 // too short to count
+    };
+
+    /**
+     * The Duration each entry of ACCEPTABLE_FRACTIONS_OF_QUARTER_NOTE stands for.
+     */
+    private static final Duration[] DURATIONS = new Duration[ACCEPTABLE_FRACTIONS_OF_QUARTER_NOTE.length];
+
+    private static final Map<Integer, TickQuantizer> QUANTIZERS = new ConcurrentHashMap<>();
+
+    static {
+        Duration quarter = Duration.of(Duration.DurationValue.QUARTER, false);
+
+        for (int i = 0; i < DURATIONS.length; i++) {
+            DURATIONS[i] = Duration.getDurationByRatio(quarter, ACCEPTABLE_FRACTIONS_OF_QUARTER_NOTE[i]);
+        }
+    }
+
+    private final int resolution;
+
+    // rounded Duration for every length from 0 to a whole note, indexed by ticks
+    private final Duration[] durations;
+
+    // length in ticks of each entry of durations
+    private final long[] ticks;
+
+    // number of rests filling each gap of at most a whole note, see decompose()
+    private final int[] restCounts;
+
+    private TickQuantizer(int resolution) {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("Resolution must be positive: " + resolution);
+        }
+
+        this.resolution = resolution;
+
+        durations = new Duration[resolution * 4 + 1];
+        ticks = new long[resolution * 4 + 1];
+        restCounts = new int[resolution * 4 + 1];
+
+        for (int t = 0; t < durations.length; t++) {
+            durations[t] = DURATIONS[closestFraction(t / (double) resolution)];
+            ticks[t] = toTicks(durations[t]);
+
+            if (ticks[t] > 0) {
+                // the closest rest, then the rests filling whatever is left
+                long left = t - ticks[t];
+                restCounts[t] = 1 + (left > 0 ? restCounts[(int) left] : 0);
+            }
+        }
+    }
+
+    /**
+     * Get the quantizer for a resolution, building it the first time the resolution is seen.
+     *
+     * @param resolution Ticks per quarter note.
+     */
+    static TickQuantizer forResolution(int resolution) {
+        return QUANTIZERS.computeIfAbsent(resolution, TickQuantizer::new);
+    }
+
+    /**
+     * Rounds a number of ticks to the closest Duration this program can model.
+     *
+     * @param noteTicks Length in ticks.
+     * @return The closest Duration, at most a whole note.
+     */
+    Duration quantize(long noteTicks) {
+        if (noteTicks >= 0 && noteTicks < durations.length) {
+            return durations[(int) noteTicks];
+        }
+
+        return DURATIONS[closestFraction(noteTicks / (double) resolution)];
+    }
+
+    /**
+     * Length in ticks of the Duration a number of ticks rounds to, i.e. toTicks(quantize(noteTicks)).
+     */
+    long quantizedTicks(long noteTicks) {
+        if (noteTicks >= 0 && noteTicks < ticks.length) {
+            return ticks[(int) noteTicks];
+        }
+
+        return toTicks(quantize(noteTicks));
+    }
+
+    /**
+     * Number of rests decompose() writes for a gap.
+     *
+     * @param gapTicks Length of the gap in ticks.
+     */
+    int restCount(long gapTicks) {
+        if (gapTicks <= 0) {
+            return 0;
+        }
+
+        long wholes = wholeRests(gapTicks);
+
+        return Math.toIntExact(wholes + restCounts[(int) (gapTicks - wholes * wholeTicks())]);
+    }
+
+    /**
+     * Writes the rests filling a gap, without allocating: whole rests while more than a whole note is left,
+     * then the closest rest to what is left, until what is left is too short to notate or was rounded up.
+     *
+     * @param gapTicks Length of the gap in ticks.
+     * @param buffer   Array to write the rests' Durations to, with room for restCount(gapTicks) of them.
+     * @param offset   Index in buffer of the first Duration.
+     * @return The number of Durations written.
+     * @throws IllegalArgumentException If the buffer is too small.
+     */
+    int decompose(long gapTicks, Duration[] buffer, int offset) {
+        int count = restCount(gapTicks);
+
+        if (buffer.length - offset < count) {
+            throw new IllegalArgumentException("Buffer has room for " + (buffer.length - offset) + " rests, "
+                    + count + " needed.");
+        }
+
+        long wholes = wholeRests(gapTicks);
+        Arrays.fill(buffer, offset, (int) (offset + wholes), DURATIONS[0]);
+
+        int i = (int) (offset + wholes);
+        int left = (int) (gapTicks - wholes * wholeTicks());
+
+        while (left > 0 && ticks[left] > 0) {
+            buffer[i++] = durations[left];
+            left -= ticks[left];
+        }
+
+        return count;
+    }
+
+    private long wholeTicks() {
+        return durations.length - 1;
+    }
+
+    /**
+     * @return The number of whole rests at the start of a gap, after which at most a whole note is left.
+     */
+    private long wholeRests(long gapTicks) {
+        return gapTicks > wholeTicks() ? (gapTicks - 1) / wholeTicks() : 0;
+    }
+
+    /**
+     * Length of a Duration in ticks at this resolution.
+     */
+    long toTicks(Duration d) {
+        return (long) d.getTicks() * resolution * 4 / Duration.TICKS_PER_WHOLE_NOTE;
+    }
+
+    /**
+     * Rounds a double to the closest of these "clean" fractions of a quarter note:
+     * <ol>
+     * <li>Whole (4)</li>
+     * <li>Dotted half (3)</li>
+     * <li>Half (2)</li>
+     * <li>Dotted quarter (1.5)</li>
+     * <li>Quarter (1)</li>
+     * <li>Dotted eighth (0.75)</li>
+     * <li>Eighth (0.5)</li>
+     * <li>Dotted sixteenth (0.375)</li>
+     * <li>Sixteenth (0.25)</li>
+     * <li>Dotted thirty-second (0.1875)</li>
+     * <li>Thirty-second (0.125)</li>
+     * <li>Sixty-fourth (0.0625)</li>
+     * </ol>
+     *
+     * @param d The floating point number to round
+     * @return The index in ACCEPTABLE_FRACTIONS_OF_QUARTER_NOTE of the fraction closest to d.
+     */
+    private static int closestFraction(double d) {
+        double minDistance = Double.MAX_VALUE;
+
+        for (int i = 0; i < ACCEPTABLE_FRACTIONS_OF_QUARTER_NOTE.length; i++) {
+            double distance = Math.abs(d - ACCEPTABLE_FRACTIONS_OF_QUARTER_NOTE[i]);
+
+            if (distance < minDistance) {
+                minDistance = distance;
+            } else {
+                // found our closest match
+                return i - 1;
+            }
+        }
+
+        // The smallest resolution accepted falls through
+        return ACCEPTABLE_FRACTIONS_OF_QUARTER_NOTE.length - 1;
+    }
+}
@@ -0,0 +1,201 @@
+package midi;
+
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.util.Arrays;
+
+/**
+ * The decoded events of a single MIDI track, held in parallel primitive arrays sorted by tick.
+ * Tracks are decoded independently (and concurrently), then merged into one tick ordered stream
+ * with {@link #merge(TrackEvents[], MidiEventHandler)}.
+ * <p>
+ * Channel messages are packed into a single int as status << 16 | data1 << 8 | data2.
+ * Meta events are packed as 0xff << 16 | type << 8, with their payload kept alongside.
+ *
+ * @author reedt
+ */
+class TrackEvents {
+    private static final int META = 0xff;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] ticks = new long[INITIAL_CAPACITY];
+    private int[] messages = new int[INITIAL_CAPACITY];
+    private byte[][] metaData = new byte[INITIAL_CAPACITY][];
+    private int size;
+
+    /**
+     * Add a channel message. Events must be added in tick order.
+     *
+     * @param tick    Absolute tick time.
+     * @param status  Status byte, including channel.
+     * @param data1   First data byte.
+     * @param data2   Second data byte.
+     */
+    void addChannelMessage(long tick, int status, int data1, int data2) {
+        add(tick, status << 16 | data1 << 8 | data2, null);
+    }
+
+    /**
+     * Add a meta event. Events must be added in tick order.
+     *
+     * @param tick Absolute tick time.
+     * @param type Meta event type.
+     * @param data Meta event payload.
+     */
+    void addMetaMessage(long tick, int type, byte[] data) {
+        add(tick, META << 16 | type << 8, data);
+    }
+
+    private void add(long tick, int message, byte[] data) {
+        if (size == ticks.length) {
+            int capacity = size * 2;
+            ticks = Arrays.copyOf(ticks, capacity);
+            messages = Arrays.copyOf(messages, capacity);
+            metaData = Arrays.copyOf(metaData, capacity);
+        }
+
+        ticks[size] = tick;
+        messages[size] = message;
+        metaData[size] = data;
+        size++;
+    }
+
+    /**
+     * @return The number of events in this track.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Hand the event at the given index to a handler.
+     */
+    private void replay(int index, MidiEventHandler handler) {
+        int message = messages[index];
+        int status = message >>> 16;
+
+        if (status == META) {
+            handler.metaMessage(ticks[index], (message >>> 8) & 0xff, metaData[index]);
+        } else {
+            handler.channelMessage(ticks[index], status & 0xf0, status & 0x0f, (message >>> 8) & 0xff, message & 0xff);
+        }
+    }
+
+    /**
+     * Copy the channel and meta events out of each javax.sound.midi Track, decoding the tracks concurrently.
+     * System exclusive events are skipped.
+     *
+     * @param tracks Tracks of a Sequence.
+     * @return The decoded tracks, in the same order.
+     */
+    static TrackEvents[] decode(Track[] tracks) {
+        return Arrays.stream(tracks).parallel().map(TrackEvents::decode).toArray(TrackEvents[]::new);
+    }
+
+    private static TrackEvents decode(Track track) {
+        TrackEvents events = new TrackEvents();
+
+        for (int i = 0; i < track.size(); i++) {
+            long tick = track.get(i).getTick();
+            MidiMessage message = track.get(i).getMessage();
+
+            if (message instanceof ShortMessage sm) {
+                events.addChannelMessage(tick, sm.getStatus(), sm.getData1(), sm.getData2());
+            } else if (message instanceof MetaMessage mm) {
+                events.addMetaMessage(tick, mm.getType(), mm.getData());
+            }
+        }
+
+        return events;
+    }
+
+    /**
+     * K-way merge the given tracks by tick and hand every event to the handler in order.
+     * Events on the same tick are delivered track by track, in track order, so a single track
+     * replays exactly as it was decoded.
+     *
+     * @param tracks  Decoded tracks, each sorted by tick.
+     * @param handler Receiver of the merged events.
+     */
+    static void merge(TrackEvents[] tracks, MidiEventHandler handler) {
+        // binary min-heap of track indices, ordered by the tick of each track's next event
+        int[] heap = new int[tracks.length];
+        int[] cursors = new int[tracks.length];
+        int heapSize = 0;
+
+        for (int t = 0; t < tracks.length; t++) {
+            if (tracks[t].size > 0) {
+                heap[heapSize++] = t;
+                siftUp(heap, heapSize - 1, tracks, cursors);
+            }
+        }
+
+        while (heapSize > 0) {
+            int t = heap[0];
+            TrackEvents track = tracks[t];
+            long tick = track.ticks[cursors[t]];
+
+            // drain this track up to the point another track has an earlier event
+            do {
+                track.replay(cursors[t]++, handler);
+            } while (cursors[t] < track.size && track.ticks[cursors[t]] == tick);
+
+            if (cursors[t] == track.size) {
+                heap[0] = heap[--heapSize];
+            }
+
+            siftDown(heap, heapSize, tracks, cursors);
+        }
+    }
+
+    private static boolean before(int a, int b, TrackEvents[] tracks, int[] cursors) {
+        long tickA = tracks[a].ticks[cursors[a]];
+        long tickB = tracks[b].ticks[cursors[b]];
+
+        return tickA < tickB || (tickA == tickB && a < b);
+    }
+
+    private static void siftUp(int[] heap, int i, TrackEvents[] tracks, int[] cursors) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+
+            if (!before(heap[i], heap[parent], tracks, cursors)) {
+                return;
+            }
+
+            swap(heap, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int heapSize, TrackEvents[] tracks, int[] cursors) {
+        int i = 0;
+
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+
+            if (left < heapSize && before(heap[left], heap[smallest], tracks, cursors)) {
+                smallest = left;
+            }
+            if (right < heapSize && before(heap[right], heap[smallest], tracks, cursors)) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+
+            swap(heap, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+}
@@ -0,0 +1,190 @@
+package midi;
+
+import java.util.Arrays;
+
+/**
+ * Assigns notes to voices by interval scheduling: each note goes to the lowest numbered voice which is silent
+ * when the note starts, or to a new voice if every voice is sounding.
+ * <p>
+ * Sounding voices are kept in a min-heap on the tick they fall silent, and silent voices in a min-heap on their
+ * number, so placing a note costs O(log v) for v voices instead of a scan over every voice.
+ *
+ * @author reedt
+ */
+class VoiceAllocator {
+    private static final int INITIAL_CAPACITY = 8;
+
+    // sounding voices, ordered by end tick
+    private long[] busyEnds = new long[INITIAL_CAPACITY];
+    private int[] busyVoices = new int[INITIAL_CAPACITY];
+    private int busySize;
+
+    // silent voices, ordered by voice number
+    private int[] free = new int[INITIAL_CAPACITY];
+    private int freeSize;
+
+    private int voiceCount;
+
+    /**
+     * @param initialVoices Number of voices which exist, silent, before the first note.
+     */
+    VoiceAllocator(int initialVoices) {
+        for (int i = 0; i < initialVoices; i++) {
+            pushFree(voiceCount++);
+        }
+    }
+
+    /**
+     * @return The number of voices allocated so far.
+     */
+    int voiceCount() {
+        return voiceCount;
+    }
+
+    /**
+     * Place a note in the lowest numbered voice which is silent at its start.
+     *
+     * @param start Tick the note starts.
+     * @param end   Tick the note ends.
+     * @return The voice number. Equal to the previous voiceCount() if a new voice was needed.
+     */
+    int allocate(long start, long end) {
+        // every voice which has ended by the time this note starts is available again
+        while (busySize > 0 && busyEnds[0] <= start) {
+            pushFree(popBusy());
+        }
+
+        int voice = freeSize > 0 ? popFree() : voiceCount++;
+        pushBusy(voice, end);
+
+        return voice;
+    }
+
+    /**
+     * Place one of several notes starting at the same tick, taken highest first. While there are fewer voices than
+     * notes in the group, each note gets a new voice, so a chord is spread over a voice per note; after that, notes
+     * go to the lowest numbered silent voice as in allocate(start, end).
+     *
+     * @param position Position of the note in its group, from 0.
+     * @param start    Tick the note starts.
+     * @param end      Tick the note ends.
+     * @return The voice number. Equal to the previous voiceCount() if a new voice was needed.
+     */
+    int allocate(int position, long start, long end) {
+        return voiceCount <= position ? addVoice(end) : allocate(start, end);
+    }
+
+    /**
+     * Place a note in a new voice, regardless of which voices are silent.
+     *
+     * @param end Tick the note ends.
+     * @return The new voice number.
+     */
+    int addVoice(long end) {
+        int voice = voiceCount++;
+        pushBusy(voice, end);
+
+        return voice;
+    }
+
+    private void pushBusy(int voice, long end) {
+        if (busySize == busyEnds.length) {
+            busyEnds = Arrays.copyOf(busyEnds, busySize * 2);
+            busyVoices = Arrays.copyOf(busyVoices, busySize * 2);
+        }
+
+        // sift up
+        int i = busySize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (busyEnds[parent] <= end) {
+                break;
+            }
+
+            busyEnds[i] = busyEnds[parent];
+            busyVoices[i] = busyVoices[parent];
+            i = parent;
+        }
+
+        busyEnds[i] = end;
+        busyVoices[i] = voice;
+    }
+
+    private int popBusy() {
+        int top = busyVoices[0];
+        busySize--;
+
+        long end = busyEnds[busySize];
+        int voice = busyVoices[busySize];
+
+        // sift the last element down from the root
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= busySize) {
+                break;
+            }
+            if (child + 1 < busySize && busyEnds[child + 1] < busyEnds[child]) {
+                child++;
+            }
+            if (end <= busyEnds[child]) {
+                break;
+            }
+
+            busyEnds[i] = busyEnds[child];
+            busyVoices[i] = busyVoices[child];
+            i = child;
+        }
+
+        busyEnds[i] = end;
+        busyVoices[i] = voice;
+
+        return top;
+    }
+
+    private void pushFree(int voice) {
+        if (freeSize == free.length) {
+            free = Arrays.copyOf(free, freeSize * 2);
+        }
+
+        int i = freeSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (free[parent] <= voice) {
+                break;
+            }
+
+            free[i] = free[parent];
+            i = parent;
+        }
+
+        free[i] = voice;
+    }
+
+    private int popFree() {
+        int top = free[0];
+        freeSize--;
+
+        int voice = free[freeSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= freeSize) {
+                break;
+            }
+            if (child + 1 < freeSize && free[child + 1] < free[child]) {
+                child++;
+            }
+            if (voice <= free[child]) {
+                break;
+            }
+
+            free[i] = free[child];
+            i = child;
+        }
+
+        free[i] = voice;
+
+        return top;
+    }
+}
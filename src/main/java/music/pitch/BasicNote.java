@@ -2,6 +2,8 @@ package music.pitch;
 
 import music.rhythm.Duration;
 
+import java.io.IOException;
+
 /**
  * Interface representing something that can exist on a staff, either a note or rest.
  */
@@ -12,6 +14,19 @@ public interface BasicNote {
      */
     String toNoteString();
 
+    /**
+     * Write the note or rest string representation of this BasicNote, the same text as toNoteString().
+     * @param out Where to write it.
+     * @return The number of characters written.
+     * @throws IOException If out cannot be written to.
+     */
+    default int writeTo(Appendable out) throws IOException {
+        String s = toNoteString();
+        out.append(s);
+
+        return s.length();
+    }
+
     /**
      * @return The duration of this note.
      */
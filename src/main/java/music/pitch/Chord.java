@@ -43,11 +43,7 @@ public class Chord implements BasicNote {
      * @param chordString The chord string to provide
      */
     public Chord(String chordString) {
-        String[] noteStrings = chordString.split("-");
-
-        for (String s: noteStrings) {
-            chord.add(new Note(s));
-        }
+        this(NoteScanner.parseChordNotes(chordString));
     }
 
     public String toString() {
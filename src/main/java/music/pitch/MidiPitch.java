@@ -0,0 +1,215 @@
+package music.pitch;
+
+import music.rhythm.Duration;
+
+import java.util.Arrays;
+
+/**
+ * The pitch of a MIDI key, spelled as a base pitch, accidental and octave.
+ * <p>
+ * There is one shared, immutable MidiPitch per key and spelling, built once when the class loads, so turning a MIDI
+ * key into a Note is two array lookups rather than building and parsing a note string. Only keys spelled in an
+ * octave within the range of Octave have a pitch: C1 (24) to B8 (119), plus Cb1 (23) and B#8 (120) in the key
+ * signatures which spell them so.
+ * <p>
+ * Besides the plain sharp and flat spellings, each of the 15 key signatures has a table spelling every key the way
+ * that key signature would, e.g. 71 is Cb5 with seven flats, and 65 is E#4 with six or seven sharps.
+ *
+ * @author reedt
+ */
+public final class MidiPitch {
+    /**
+     * Lowest MIDI key with a sharp and flat spelling, C1.
+     */
+    public static final int MIN_KEY = 24;
+
+    /**
+     * Highest MIDI key with a sharp and flat spelling, B8.
+     */
+    public static final int MAX_KEY = 119;
+
+    private static final int NUM_KEYS = 128;
+
+    /**
+     * Most sharps or flats in a key signature.
+     */
+    public static final int MAX_FIFTHS = 7;
+
+    private static final MidiPitch[] SHARPS = new MidiPitch[NUM_KEYS];
+    private static final MidiPitch[] FLATS = new MidiPitch[NUM_KEYS];
+
+    // SPELLINGS[fifths + MAX_FIFTHS][key]
+    private static final MidiPitch[][] SPELLINGS = new MidiPitch[MAX_FIFTHS * 2 + 1][];
+
+    // the order sharps are added to a key signature; flats are added in reverse
+    private static final NoteValue[] ORDER_OF_SHARPS = {NoteValue.F, NoteValue.C, NoteValue.G, NoteValue.D,
+            NoteValue.A, NoteValue.E, NoteValue.B};
+
+    static {
+        NoteValue[] naturals = {NoteValue.C, null, NoteValue.D, null, NoteValue.E, NoteValue.F, null,
+                NoteValue.G, null, NoteValue.A, null, NoteValue.B};
+        Octave[] octaves = Octave.values();
+
+        for (int key = MIN_KEY; key <= MAX_KEY; key++) {
+            Octave o = octaves[key / 12 - 2];
+            int step = key % 12;
+
+            if (naturals[step] != null) {
+                SHARPS[key] = FLATS[key] = new MidiPitch(naturals[step], NoteValue.Accidental.NATURAL, o, key);
+            } else {
+                // black keys sit between two naturals, neither of them B/C
+                SHARPS[key] = new MidiPitch(naturals[step - 1], NoteValue.Accidental.SHARP, o, key);
+                FLATS[key] = new MidiPitch(naturals[step + 1], NoteValue.Accidental.FLAT, o, key);
+            }
+        }
+
+        for (int fifths = -MAX_FIFTHS; fifths <= MAX_FIFTHS; fifths++) {
+            SPELLINGS[fifths + MAX_FIFTHS] = buildSpellings(fifths);
+        }
+    }
+
+    public final NoteValue basePitch;
+    public final NoteValue.Accidental accidental;
+    public final Octave octave;
+    public final int key;
+
+    private MidiPitch(NoteValue basePitch, NoteValue.Accidental accidental, Octave octave, int key) {
+        this.basePitch = basePitch;
+        this.accidental = accidental;
+        this.octave = octave;
+        this.key = key;
+    }
+
+    /**
+     * Spell every key the way a key signature would: as a note of the key signature if one sounds the key,
+     * otherwise as a natural, otherwise with a sharp in sharp keys and a flat in flat keys.
+     */
+    private static MidiPitch[] buildSpellings(int fifths) {
+        NoteValue.Accidental[] signature = new NoteValue.Accidental[ORDER_OF_SHARPS.length];
+        Arrays.fill(signature, NoteValue.Accidental.NATURAL);
+
+        for (int i = 0; i < Math.abs(fifths); i++) {
+            if (fifths > 0) {
+                signature[ORDER_OF_SHARPS[i].ordinal()] = NoteValue.Accidental.SHARP;
+            } else {
+                signature[ORDER_OF_SHARPS[ORDER_OF_SHARPS.length - 1 - i].ordinal()] = NoteValue.Accidental.FLAT;
+            }
+        }
+
+        MidiPitch[] plain = fifths >= 0 ? SHARPS : FLATS;
+        MidiPitch[] spellings = new MidiPitch[NUM_KEYS];
+
+        for (int key = MIN_KEY - 1; key <= MAX_KEY + 1; key++) {
+            MidiPitch p = null;
+
+            for (NoteValue nv : NoteValue.values()) {
+                if (pitchClass(nv, signature[nv.ordinal()]) == key % 12) {
+                    p = spell(nv, signature[nv.ordinal()], key, plain);
+                }
+            }
+
+            spellings[key] = p != null ? p : plain[key];
+        }
+
+        return spellings;
+    }
+
+    private static int pitchClass(NoteValue nv, NoteValue.Accidental a) {
+        return Math.floorMod(Pitch.getPitchValue(nv, a) - 1, 12);
+    }
+
+    /**
+     * @return The pitch spelled nv and a which sounds key, the shared instance if there is one,
+     * or null if it would be spelled out of Octave's range.
+     */
+    private static MidiPitch spell(NoteValue nv, NoteValue.Accidental a, int key, MidiPitch[] plain) {
+        if (plain[key] != null && plain[key].basePitch == nv && plain[key].accidental == a) {
+            return plain[key];
+        }
+
+        int octave = (key - Pitch.getPitchValue(nv, a) + 1) / 12 - 1;
+
+        if (octave < 1 || octave > Octave.values().length) {
+            return null;
+        }
+
+        return new MidiPitch(nv, a, Octave.octaveFromInteger(octave), key);
+    }
+
+    /**
+     * Get the pitch of a key, spelled with sharps, e.g. 61 is C#4.
+     *
+     * @param key MIDI key number, middle C = 60.
+     * @return The shared instance.
+     * @throws IllegalArgumentException If the key's octave is out of range.
+     */
+    public static MidiPitch sharp(int key) {
+        return lookup(SHARPS, key);
+    }
+
+    /**
+     * Get the pitch of a key, spelled with flats, e.g. 61 is Db4.
+     *
+     * @param key MIDI key number, middle C = 60.
+     * @return The shared instance.
+     * @throws IllegalArgumentException If the key's octave is out of range.
+     */
+    public static MidiPitch flat(int key) {
+        return lookup(FLATS, key);
+    }
+
+    /**
+     * Get the pitch of a key, spelled as in a key signature.
+     *
+     * @param key    MIDI key number, middle C = 60.
+     * @param fifths Number of sharps in the key signature, or minus the number of flats.
+     * @return The shared instance.
+     * @throws IllegalArgumentException If the key's octave is out of range, or there is no such key signature.
+     */
+    public static MidiPitch spelled(int key, int fifths) {
+        if (fifths < -MAX_FIFTHS || fifths > MAX_FIFTHS) {
+            throw new IllegalArgumentException("Key signatures have at most " + MAX_FIFTHS + " sharps or flats: " + fifths);
+        }
+
+        return lookup(SPELLINGS[fifths + MAX_FIFTHS], key);
+    }
+
+    /**
+     * The MIDI key a note sounds, from its spelling. B#4 sounds C5, and Cb4 sounds B3.
+     *
+     * @param n A note, not a rest.
+     * @return MIDI key number, middle C = 60.
+     */
+    public static int keyOf(Note n) {
+        return keyOf(n.octave, n.pitchValue);
+    }
+
+    static int keyOf(Octave o, int pitchValue) {
+        return (o.getNumberValue() + 1) * 12 + pitchValue - 1;
+    }
+
+    private static MidiPitch lookup(MidiPitch[] table, int key) {
+        MidiPitch p = key >= 0 && key < NUM_KEYS ? table[key] : null;
+
+        if (p == null) {
+            throw new IllegalArgumentException("Invalid octave (range 1-8) for MIDI key " + key + ".");
+        }
+
+        return p;
+    }
+
+    /**
+     * Create a Note of this pitch.
+     *
+     * @param d The duration of the note.
+     * @return A new Note.
+     */
+    public Note toNote(Duration d) {
+        return new Note(basePitch, accidental, octave, d);
+    }
+
+    @Override
+    public String toString() {
+        return toNote(null).pitchOnlyToString();
+    }
+}
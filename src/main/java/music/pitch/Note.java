@@ -2,6 +2,9 @@ package music.pitch;
 
 import music.rhythm.Duration;
 
+import java.io.IOException;
+import java.util.Comparator;
+
 /**
  * Represents a specific note, containing information about its exact pitch.
  * A Note has a base pitch, an accidental, an octave, and a duration.
@@ -18,11 +21,31 @@ public class Note implements BasicNote, Comparable<Note> {
     public final Octave octave;
     private int index = -1;
 
+    // like the index, not compared by equals
+    private boolean tiedToNext;
+
     private Duration duration;
 
     // This field provides ease of comparison between Notes
     public final int pitchValue;
 
+    /**
+     * The sounding pitch in semitones, equal to its MIDI key, e.g. 60 for both B#3 and C4.
+     * Notes without an octave have their pitch class, 0 (C) to 11 (B), and rests have NO_SEMITONE.
+     * Equality, ordering and hashing by pitch all compare this one number.
+     */
+    public final int semitone;
+
+    /**
+     * Semitone of a rest.
+     */
+    public static final int NO_SEMITONE = -1;
+
+    /**
+     * Orders notes by sounding pitch alone, lowest first; enharmonic notes compare equal.
+     */
+    public static final Comparator<Note> PITCH_ORDER = Comparator.comparingInt(n -> n.semitone);
+
     /**
      * Create a note object, representing a specific pitch on a keyboard.
      *
@@ -36,6 +59,7 @@ public class Note implements BasicNote, Comparable<Note> {
         this.accidental = accidental;
         this.pitchValue = Pitch.getPitchValue(basePitch, accidental);
         this.octave = o;
+        this.semitone = semitone(o, pitchValue);
         this.duration = d;
     }
 
@@ -66,7 +90,8 @@ public class Note implements BasicNote, Comparable<Note> {
         this.accidental = accidental;
         this.pitchValue = Pitch.getPitchValue(basePitch, accidental);
         this.octave = o;
-        this.duration = new Duration(Duration.DurationValue.QUARTER, false);
+        this.semitone = semitone(o, pitchValue);
+        this.duration = Duration.of(Duration.DurationValue.QUARTER, false);
     }
 
     /**
@@ -95,7 +120,8 @@ public class Note implements BasicNote, Comparable<Note> {
         this.accidental = accidental;
         this.pitchValue = Pitch.getPitchValue(basePitch, accidental);
         this.octave = Octave.FOUR;
-        this.duration = new Duration(Duration.DurationValue.QUARTER, false);
+        this.semitone = semitone(octave, pitchValue);
+        this.duration = Duration.of(Duration.DurationValue.QUARTER, false);
     }
 
     /**
@@ -116,67 +142,18 @@ public class Note implements BasicNote, Comparable<Note> {
      * Format: [Base note][Optional: # or b][Octave number]:[Optional: Duration string]
      *
      * @param noteStringIn Note representation string
+     * @see NoteScanner
      */
     public Note(String noteStringIn) {
-        NoteValue nv;
-        NoteValue.Accidental mod;
-        Octave oct;
-        Duration dur;
-        String noteString;
-
-        if (noteStringIn.indexOf(':') == -1) {
-            // has no duration value
-            dur = new Duration(Duration.DurationValue.QUARTER, false);
-            noteString = noteStringIn;
-        } else {
-            // has a duration value
-            dur = Duration.parseDurationString(noteStringIn.substring(noteStringIn.indexOf(':') + 1));
-            noteString = noteStringIn.substring(0, noteStringIn.indexOf(':'));
-        }
-
-        try {
-            nv = NoteValue.valueOf(("" + noteString.charAt(0)).toUpperCase());
-        } catch (IllegalArgumentException e) {
-            throw new IllegalArgumentException("Note string format incorrect (Note name not found in first position).");
-        }
-
-        if (noteString.length() == 2) {
-            // Note is natural, so last character must be octave
-            mod = NoteValue.Accidental.NATURAL;
-
-            try {
-                // Octave constructor handles out of range octaves
-                oct = Octave.octaveFromInteger(Integer.parseInt("" + noteString.charAt(1)));
-            } catch (NumberFormatException e) {
-                throw new IllegalArgumentException("Note string format incorrect (No octave found).");
-            }
-
-        } else if (noteString.length() == 3) {
-            // Note has modifications
-            char modification = noteString.charAt(1);
-
-            mod = switch (modification) {
-                case '#' -> NoteValue.Accidental.SHARP;
-                case 'b' -> NoteValue.Accidental.FLAT;
-                default -> throw new IllegalArgumentException("Note string format incorrect (note modification incorrect). " +
-                        "Pick either: 'b' or '#'.");
-            };
-
-            try {
-                oct = Octave.octaveFromInteger(Integer.parseInt("" + noteString.charAt(2)));
-            } catch (NumberFormatException e) {
-                throw new IllegalArgumentException("Note string format incorrect (no octave found).");
-            }
-
-        } else {
-            throw new IllegalArgumentException("Note string format incorrect (incorrect length - missing parameters).");
-        }
+        this(NoteScanner.packNote(noteStringIn));
+    }
 
-        this.basePitch = nv;
-        this.accidental = mod;
-        this.octave = oct;
-        this.pitchValue = Pitch.getPitchValue(nv, mod);
-        this.duration = dur;
+    /**
+     * Create the note a PackedNote int stands for.
+     */
+    private Note(int packed) {
+        this(PackedNote.basePitch(packed), PackedNote.accidental(packed), PackedNote.octave(packed),
+                PackedNote.duration(packed));
     }
 
     /**
@@ -191,6 +168,36 @@ public class Note implements BasicNote, Comparable<Note> {
         this.index = index;
     }
 
+    private static int semitone(Octave o, int pitchValue) {
+        if (pitchValue == -1) {
+            return NO_SEMITONE;
+        }
+
+        if (o == null) {
+            return Math.floorMod(pitchValue - 1, 12);
+        }
+
+        return MidiPitch.keyOf(o, pitchValue);
+    }
+
+    /**
+     * Create a note for a MIDI key, spelled with sharps, without building a note string.
+     *
+     * @param key MIDI key number, middle C = 60.
+     * @param d   The duration of the note
+     * @return A new Note, e.g. C#4 for key 61.
+     * @throws IllegalArgumentException If the key's octave is out of range.
+     * @see MidiPitch
+     */
+    public static Note fromMidiKey(int key, Duration d) {
+        return MidiPitch.sharp(key).toNote(d);
+    }
+
+    /**
+     * Width of compactFormatBasicNote().
+     */
+    public static final int COMPACT_WIDTH = 7;
+
     /**
      * Formats a note or rest into a compact format, exactly 7 characters long, e.g.:
      * The note E5, duration sixteenth note: E5:S...
@@ -238,6 +245,40 @@ public class Note implements BasicNote, Comparable<Note> {
         return pitchOnlyToString() + ":" + duration.getDurationCode();
     }
 
+    @Override
+    public int writeTo(Appendable out) throws IOException {
+        return writeTo(out, basePitch, accidental, octave, duration);
+    }
+
+    /**
+     * Write a note string from its parts, the same text as toNoteString() of a Note with those parts.
+     *
+     * @return The number of characters written.
+     */
+    static int writeTo(Appendable out, NoteValue basePitch, NoteValue.Accidental accidental, Octave octave,
+                       Duration duration) throws IOException {
+        out.append(basePitch.name());
+        int written = 1;
+
+        switch (accidental) {
+            case SHARP -> {
+                out.append('#');
+                written++;
+            }
+            case FLAT -> {
+                out.append('b');
+                written++;
+            }
+            default -> {
+            }
+        }
+
+        // octaves are a single digit
+        out.append((char) ('0' + octave.getNumberValue())).append(':');
+
+        return written + 2 + duration.writeCodeTo(out);
+    }
+
     /**
      * A note is equal to another note when it represents the same sounding pitch,
      * as well as the same duration.
@@ -265,62 +306,42 @@ public class Note implements BasicNote, Comparable<Note> {
     /**
      * Determines if two notes are equal, ignoring duration.
      * A note is equal to another note when it represents the same sounding pitch,
-     * as well as the same duration.
+     * so B#3 equals C4, and Cb4 equals B3.
      *
      * @param n Note to compare
      * @return True if notes represent the same pitch, false otherwise.
      */
     public boolean equalsPitchOnly(Note n) {
-        // Notes must be in the same octave to be equal
-
-        // Octave changes on C, corner case
-        if (this.basePitch == NoteValue.C || n.basePitch == NoteValue.C) {
-            // Not more than one octave separates them
-            if (Math.abs(n.octave.getNumberValue() - this.octave.getNumberValue()) > 1) {
-                return false;
-            }
-        }
-
-        // No corner case; notes are equal, octaves aren't
-        if (!(this.octave.equals(n.octave)) && this.pitchValue == n.pitchValue) {
-            return false;
-        }
-
-        // Enharmonic notes are equal pitch even though notated differently
-        // Special case for wrapping around B# and C, or Cb and B
-        return this.pitchValue == 13 && n.pitchValue == 1
-                || this.pitchValue == 1 && n.pitchValue == 13
-                || this.pitchValue == 0 && n.pitchValue == 12
-                || this.pitchValue == 12 && n.pitchValue == 0
-                || this.pitchValue == n.pitchValue;
+        return this.semitone == n.semitone;
     }
 
     /**
      * A note is "less than" another note when it is a lower pitch, and higher when its pitch is higher.
+     * Enharmonic notes compare equal, whatever their durations; see PITCH_ORDER.
      *
      * @param o Note to compare to
      * @return Negative, zero, or positive based on comparison
      */
     @Override
     public int compareTo(Note o) {
-        // Covers enharmonic equivalence
-        if (this.equals(o)) {
-            return 0;
-        }
-
-        if (this.octave.getNumberValue() == o.octave.getNumberValue()) {
-            // In same octave
-            return this.pitchValue - o.pitchValue;
-        } else {
-            // In different octaves and not enharmonic
-            return this.octave.getNumberValue() - o.octave.getNumberValue();
-        }
+        return Integer.compare(this.semitone, o.semitone);
     }
 
+    /**
+     * Hashes the sounding pitch alone, so the hash does not change when the duration is set,
+     * and enharmonic notes, which may be equal, hash alike.
+     */
     @Override
     public int hashCode() {
         // purposefully doesn't include index
-        return this.pitchValue + duration.hashCode();
+        return pitchHashCode();
+    }
+
+    /**
+     * @return A hash of the sounding pitch, consistent with equalsPitchOnly().
+     */
+    public int pitchHashCode() {
+        return semitone;
     }
 
     @Override
@@ -343,6 +364,23 @@ public class Note implements BasicNote, Comparable<Note> {
         return index;
     }
 
+    /**
+     * @return True if this note is tied to the next note of its voice, e.g. the first half of a note split
+     * at a bar line.
+     */
+    public boolean isTiedToNext() {
+        return tiedToNext;
+    }
+
+    /**
+     * Tie this note to the next note of its voice, or untie it.
+     *
+     * @param tiedToNext True to tie.
+     */
+    public void setTiedToNext(boolean tiedToNext) {
+        this.tiedToNext = tiedToNext;
+    }
+
     @Override
     public boolean equalsIndex(BasicNote b) {
         return this.index == b.getIndex() && this.equals(b);
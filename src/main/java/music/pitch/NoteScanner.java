@@ -0,0 +1,303 @@
+package music.pitch;
+
+import music.rhythm.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads note strings, rest strings and chord strings, separated by commas, straight out of a CharSequence.
+ * <p>
+ * Each character is read once, in place, so no substrings are made and durations come back as the shared
+ * Duration instances. Notes and rests can be read as PackedNote ints, which allocates nothing at all, or as objects.
+ * <p>
+ * Formats:
+ * <ul>
+ * <li>Note: [Base note][Optional: # or b][Octave number]:[Optional: Duration string], e.g. Ab4:H or C5</li>
+ * <li>Rest: R:[Duration string], e.g. R:Qd</li>
+ * <li>Chord: [Notestring]-[Notestring]..., e.g. C4:Q-E4:Q-G4:Q</li>
+ * </ul>
+ * Errors name the position of the first character which could not be read.
+ *
+ * @author reedt
+ */
+public class NoteScanner {
+    private static final NoteValue[] NOTE_VALUES = NoteValue.values();
+    private static final Octave[] OCTAVES = Octave.values();
+    private static final Duration.DurationValue[] DURATION_VALUES = Duration.DurationValue.values();
+    private static final String DURATION_CODES = "WHQESTXN";
+
+    private final CharSequence text;
+    private final int end;
+    private int position;
+
+    /**
+     * Read a whole CharSequence.
+     *
+     * @param text Comma separated notes, rests and chords.
+     */
+    public NoteScanner(CharSequence text) {
+        this(text, 0, text.length());
+    }
+
+    /**
+     * Read part of a CharSequence.
+     *
+     * @param text  Comma separated notes, rests and chords.
+     * @param start Index of the first character to read.
+     * @param end   Index after the last character to read.
+     */
+    public NoteScanner(CharSequence text, int start, int end) {
+        if (start < 0 || end > text.length() || start > end) {
+            throw new IndexOutOfBoundsException("Range " + start + "-" + end + " out of bounds for length "
+                    + text.length() + ".");
+        }
+
+        this.text = text;
+        this.position = start;
+        this.end = end;
+    }
+
+    /**
+     * Parses a single note string.
+     *
+     * @param noteString Note representation string
+     * @return A new Note
+     */
+    public static Note parseNote(CharSequence noteString) {
+        return PackedNote.toNote(packNote(noteString));
+    }
+
+    /**
+     * Parses a single note string, which must not be a rest, into a PackedNote int.
+     */
+    static int packNote(CharSequence noteString) {
+        NoteScanner s = new NoteScanner(noteString);
+        int packed = s.scanNote();
+        s.expectEnd();
+
+        return packed;
+    }
+
+    /**
+     * Parses a single note or rest string into a PackedNote int.
+     *
+     * @param noteString Note or rest representation string
+     * @return The packed note or rest.
+     */
+    public static int parsePacked(CharSequence noteString) {
+        NoteScanner s = new NoteScanner(noteString);
+        int packed = s.scanNoteOrRest();
+        s.expectEnd();
+
+        return packed;
+    }
+
+    /**
+     * Parses a chord string into its notes.
+     *
+     * @param chordString Chord representation string
+     * @return The notes of the chord, in the order written.
+     */
+    public static Note[] parseChordNotes(CharSequence chordString) {
+        NoteScanner s = new NoteScanner(chordString);
+        List<Note> notes = new ArrayList<>();
+        notes.add(PackedNote.toNote(s.scanNote()));
+
+        while (s.position < s.end && s.text.charAt(s.position) == '-') {
+            s.position++;
+            notes.add(PackedNote.toNote(s.scanNote()));
+        }
+
+        s.expectEnd();
+
+        return notes.toArray(new Note[0]);
+    }
+
+    /**
+     * @return True if there is another note, rest or chord to read.
+     */
+    public boolean hasNext() {
+        return position < end;
+    }
+
+    /**
+     * @return Index in the text of the next character to be read.
+     */
+    public int position() {
+        return position;
+    }
+
+    /**
+     * Count the notes, rests and chords left, without reading them. Useful for sizing arrays before a bulk read.
+     *
+     * @return The number of comma separated elements left.
+     */
+    public int countRemaining() {
+        if (position >= end) {
+            return 0;
+        }
+
+        int count = 1;
+
+        for (int i = position; i < end - 1; i++) {
+            if (text.charAt(i) == ',') {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Read the next note or rest, and the comma after it.
+     *
+     * @return The packed note or rest, see PackedNote.
+     * @throws IllegalArgumentException If the next element is not a note or rest, e.g. a chord.
+     */
+    public int nextPacked() {
+        int packed = scanNoteOrRest();
+        expectSeparator();
+
+        return packed;
+    }
+
+    /**
+     * Read the next note, rest or chord, and the comma after it.
+     *
+     * @return A new Note, Rest or Chord.
+     */
+    public BasicNote next() {
+        int packed = scanNoteOrRest();
+
+        if (position < end && text.charAt(position) == '-' && !PackedNote.isRest(packed)) {
+            List<Note> notes = new ArrayList<>();
+            notes.add(PackedNote.toNote(packed));
+
+            while (position < end && text.charAt(position) == '-') {
+                position++;
+                notes.add(PackedNote.toNote(scanNote()));
+            }
+
+            expectSeparator();
+
+            return new Chord(notes.toArray(new Note[0]));
+        }
+
+        expectSeparator();
+
+        return PackedNote.toNote(packed);
+    }
+
+    private int scanNoteOrRest() {
+        if (position < end && text.charAt(position) == 'R') {
+            position++;
+            expect(':', "Rest string format incorrect (no duration found)");
+
+            return PackedNote.packRest(scanDuration());
+        }
+
+        return scanNote();
+    }
+
+    private int scanNote() {
+        NoteValue nv = scanNoteValue();
+        NoteValue.Accidental mod = NoteValue.Accidental.NATURAL;
+
+        if (position < end) {
+            char c = text.charAt(position);
+
+            if (c == '#') {
+                mod = NoteValue.Accidental.SHARP;
+                position++;
+            } else if (c == 'b') {
+                mod = NoteValue.Accidental.FLAT;
+                position++;
+            }
+        }
+
+        Octave oct = scanOctave();
+        Duration dur = Duration.of(Duration.DurationValue.QUARTER, false);
+
+        if (position < end && text.charAt(position) == ':') {
+            position++;
+            dur = scanDuration();
+        }
+
+        return PackedNote.pack(nv, mod, oct, dur, PackedNote.DEFAULT_VELOCITY, false);
+    }
+
+    private NoteValue scanNoteValue() {
+        char c = position < end ? Character.toUpperCase(text.charAt(position)) : 0;
+
+        if (c < 'A' || c > 'G') {
+            throw error("Note string format incorrect (note name not found)");
+        }
+
+        position++;
+
+        // NoteValue is declared A-G
+        return NOTE_VALUES[c - 'A'];
+    }
+
+    private Octave scanOctave() {
+        char c = position < end ? text.charAt(position) : 0;
+
+        if (c < '0' || c > '9') {
+            throw error("Note string format incorrect (no octave found)");
+        }
+
+        if (c < '1' || c - '1' >= OCTAVES.length) {
+            throw error("Invalid octave (range 1-8)");
+        }
+
+        position++;
+
+        return OCTAVES[c - '1'];
+    }
+
+    private Duration scanDuration() {
+        int ordinal = position < end ? DURATION_CODES.indexOf(text.charAt(position)) : -1;
+
+        if (ordinal == -1) {
+            throw error("Note string format incorrect (invalid duration string)");
+        }
+
+        boolean dot = position + 1 < end && text.charAt(position + 1) == 'd';
+
+        if (dot && DURATION_VALUES[ordinal] == Duration.DurationValue.SIXTY_FOURTH) {
+            throw error("Duration resolution too great (cannot exceed sixty-fourth note)");
+        }
+
+        position += dot ? 2 : 1;
+
+        return Duration.of(DURATION_VALUES[ordinal], dot);
+    }
+
+    private void expect(char c, String message) {
+        if (position >= end || text.charAt(position) != c) {
+            throw error(message);
+        }
+
+        position++;
+    }
+
+    /**
+     * Skip the comma after an element, or stop at the end of the text.
+     */
+    private void expectSeparator() {
+        if (position < end) {
+            expect(',', "Expected ',' between notes");
+        }
+    }
+
+    private void expectEnd() {
+        if (position < end) {
+            throw error("Note string format incorrect (unexpected characters)");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + " of '" + text + "'.");
+    }
+}
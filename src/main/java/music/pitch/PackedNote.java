@@ -0,0 +1,213 @@
+package music.pitch;
+
+import music.rhythm.Duration;
+import music.rhythm.Rest;
+
+import java.io.IOException;
+
+/**
+ * Encodes a note or rest into a single int, for storing many notes without an object per note.
+ * <p>
+ * Bits, from least significant:
+ * <ol>
+ * <li>0-6: MIDI key, middle C = 60</li>
+ * <li>7-9: base pitch, as a NoteValue ordinal</li>
+ * <li>10-11: accidental, as an Accidental ordinal</li>
+ * <li>12-15: duration, see Duration.getPackedCode()</li>
+ * <li>16: rest</li>
+ * <li>17: tied to the next note</li>
+ * <li>18-24: MIDI velocity</li>
+ * </ol>
+ * The base pitch and accidental keep the note's spelling, so C#4 and Db4 pack differently though they share a key.
+ * The pitch bits of a rest are zero.
+ *
+ * @author reedt
+ */
+public class PackedNote {
+    private PackedNote() {
+    }
+
+    /**
+     * Velocity given to notes packed without one.
+     */
+    public static final int DEFAULT_VELOCITY = 64;
+
+    private static final int KEY_MASK = 0x7f;
+    private static final int BASE_PITCH_SHIFT = 7;
+    private static final int ACCIDENTAL_SHIFT = 10;
+    private static final int DURATION_SHIFT = 12;
+    private static final int REST = 1 << 16;
+    private static final int TIE = 1 << 17;
+    private static final int VELOCITY_SHIFT = 18;
+
+    private static final NoteValue[] NOTE_VALUES = NoteValue.values();
+    private static final NoteValue.Accidental[] ACCIDENTALS = NoteValue.Accidental.values();
+
+    /**
+     * Pack a note or rest at the default velocity.
+     *
+     * @param b A Note or Rest.
+     * @return The packed note.
+     * @throws IllegalArgumentException If b is neither a Note nor a Rest, e.g. a Chord.
+     */
+    public static int pack(BasicNote b) {
+        if (!(b instanceof Note)) {
+            throw new IllegalArgumentException("Only notes and rests can be packed: " + b + ".");
+        }
+
+        Note n = (Note) b;
+
+        return pack(n, DEFAULT_VELOCITY, n.isTiedToNext());
+    }
+
+    /**
+     * Pack a note or rest.
+     *
+     * @param n        A Note or Rest.
+     * @param velocity MIDI velocity, 0-127.
+     * @param tie      True if the note is tied to the next one.
+     * @return The packed note.
+     * @throws IllegalArgumentException If the velocity is out of range.
+     */
+    public static int pack(Note n, int velocity, boolean tie) {
+        if (n instanceof Rest) {
+            return n.getDuration().getPackedCode() << DURATION_SHIFT | REST
+                    | checkVelocity(velocity) << VELOCITY_SHIFT | (tie ? TIE : 0);
+        }
+
+        return pack(n.basePitch, n.accidental, n.octave, n.getDuration(), velocity, tie);
+    }
+
+    /**
+     * Pack a note from its parts, without creating a Note.
+     *
+     * @param basePitch  The base pitch, A-G
+     * @param accidental Any accidental on the pitch
+     * @param o          The octave it is spelled in
+     * @param d          The duration of the note
+     * @param velocity   MIDI velocity, 0-127.
+     * @param tie        True if the note is tied to the next one.
+     * @return The packed note.
+     * @throws IllegalArgumentException If the velocity is out of range.
+     */
+    public static int pack(NoteValue basePitch, NoteValue.Accidental accidental, Octave o, Duration d,
+                           int velocity, boolean tie) {
+        return d.getPackedCode() << DURATION_SHIFT
+                | checkVelocity(velocity) << VELOCITY_SHIFT
+                | (tie ? TIE : 0)
+                | MidiPitch.keyOf(o, Pitch.getPitchValue(basePitch, accidental))
+                | basePitch.ordinal() << BASE_PITCH_SHIFT
+                | accidental.ordinal() << ACCIDENTAL_SHIFT;
+    }
+
+    private static int checkVelocity(int velocity) {
+        if (velocity < 0 || velocity > KEY_MASK) {
+            throw new IllegalArgumentException("MIDI velocity out of range 0-127: " + velocity);
+        }
+
+        return velocity;
+    }
+
+    /**
+     * Pack a rest at the default velocity, as pack(BasicNote) would.
+     *
+     * @param d Duration of the rest.
+     * @return The packed rest.
+     */
+    public static int packRest(Duration d) {
+        return d.getPackedCode() << DURATION_SHIFT | REST | DEFAULT_VELOCITY << VELOCITY_SHIFT;
+    }
+
+    /**
+     * @return The MIDI key of a packed note, or 0 for a rest.
+     */
+    public static int key(int packed) {
+        return packed & KEY_MASK;
+    }
+
+    /**
+     * @return The base pitch of a packed note, or null for a rest.
+     */
+    public static NoteValue basePitch(int packed) {
+        return isRest(packed) ? null : NOTE_VALUES[packed >>> BASE_PITCH_SHIFT & 0x7];
+    }
+
+    /**
+     * @return The accidental of a packed note, or null for a rest.
+     */
+    public static NoteValue.Accidental accidental(int packed) {
+        return isRest(packed) ? null : ACCIDENTALS[packed >>> ACCIDENTAL_SHIFT & 0x3];
+    }
+
+    /**
+     * @return The octave of a packed note as spelled, e.g. 4 for B#4 though it sounds in octave 5.
+     */
+    public static Octave octave(int packed) {
+        if (isRest(packed)) {
+            return null;
+        }
+
+        int pitchValue = Pitch.getPitchValue(basePitch(packed), accidental(packed));
+
+        return Octave.octaveFromInteger((key(packed) - pitchValue + 1) / 12 - 1);
+    }
+
+    public static Duration duration(int packed) {
+        return Duration.fromPackedCode(packed >>> DURATION_SHIFT & 0xf);
+    }
+
+    /**
+     * Write the note or rest string of a packed note, the same text as toNoteString() of toNote(packed),
+     * without creating the Note.
+     *
+     * @param packed The packed note or rest.
+     * @param out    Where to write it.
+     * @return The number of characters written.
+     * @throws IOException If out cannot be written to.
+     */
+    public static int writeTo(int packed, Appendable out) throws IOException {
+        if (isRest(packed)) {
+            out.append("R:");
+
+            return 2 + duration(packed).writeCodeTo(out);
+        }
+
+        return Note.writeTo(out, basePitch(packed), accidental(packed), octave(packed), duration(packed));
+    }
+
+    public static boolean isRest(int packed) {
+        return (packed & REST) != 0;
+    }
+
+    public static boolean isTied(int packed) {
+        return (packed & TIE) != 0;
+    }
+
+    public static int velocity(int packed) {
+        return packed >>> VELOCITY_SHIFT & KEY_MASK;
+    }
+
+    /**
+     * @return The packed note with a different duration.
+     */
+    public static int withDuration(int packed, Duration d) {
+        return packed & ~(0xf << DURATION_SHIFT) | d.getPackedCode() << DURATION_SHIFT;
+    }
+
+    /**
+     * Create the Note or Rest a packed note stands for. Velocity is not kept.
+     *
+     * @param packed The packed note.
+     * @return A new Note, or a new Rest.
+     */
+    public static Note toNote(int packed) {
+        if (isRest(packed)) {
+            return new Rest(duration(packed));
+        }
+
+        Note n = new Note(basePitch(packed), accidental(packed), octave(packed), duration(packed));
+        n.setTiedToNext(isTied(packed));
+
+        return n;
+    }
+}
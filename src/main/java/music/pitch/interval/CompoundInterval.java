@@ -0,0 +1,49 @@
+package music.pitch.interval;
+
+/**
+ * An interval wider than an octave: a simple interval plus one or more octaves, e.g. a major tenth is a major third
+ * plus an octave.
+ * @author reedt
+ */
+public final class CompoundInterval implements Interval {
+    public final Interval simple;
+    public final int octaves;
+
+    /**
+     * Create a compound interval.
+     * @param simple  The interval within an octave.
+     * @param octaves Number of octaves added to it, at least 1.
+     */
+    public CompoundInterval(Interval simple, int octaves) {
+        if (octaves < 1) {
+            throw new IllegalArgumentException("A compound interval spans at least one octave: " + octaves);
+        }
+
+        this.simple = simple;
+        this.octaves = octaves;
+    }
+
+    public int getNumHalfSteps() {
+        return simple.getNumHalfSteps() + 12 * octaves;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        CompoundInterval that = (CompoundInterval) o;
+
+        return octaves == that.octaves && simple.equals(that.simple);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * simple.hashCode() + octaves;
+    }
+
+    @Override
+    public String toString() {
+        return simple + " + " + octaves + (octaves == 1 ? " octave" : " octaves");
+    }
+}
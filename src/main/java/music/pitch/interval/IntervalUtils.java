@@ -12,6 +12,27 @@ import java.util.Arrays;
  */
 public class IntervalUtils {
     private IntervalUtils() {}
+    /**
+     * Interval for each number of half steps, covering the whole MIDI range.
+     */
+    private static final Interval[] INTERVALS = new Interval[128];
+
+    static {
+        // First look for perfect interval, then major, then minor, then diminished, then augmented
+        for (Interval[] i : Arrays.asList(PerfectIntervals.values(), MajorIntervals.values(), MinorIntervals.values(),
+                DiminishedIntervals.values(), AugmentedIntervals.values())) {
+            for (Interval j : i) {
+                if (j.getNumHalfSteps() >= 0 && INTERVALS[j.getNumHalfSteps()] == null) {
+                    INTERVALS[j.getNumHalfSteps()] = j;
+                }
+            }
+        }
+
+        for (int halfSteps = 13; halfSteps < INTERVALS.length; halfSteps++) {
+            INTERVALS[halfSteps] = compoundInterval(halfSteps);
+        }
+    }
+
     /**
      * Returns an Interval representing the distance between two notes.
      * Searches for an interval in this order:
@@ -23,40 +44,46 @@ public class IntervalUtils {
      * <li>Augmented</li>
      * </ol>
      * <p>
-     * Note: the two notes cannot be more than one octave apart.
+     * Notes more than an octave apart give a CompoundInterval.
      *
      * @param low  The low Note
      * @param high the high Note
      * @return An Interval representing the distance between the two notes
      */
     public static Interval getIntervalBetween(Note low, Note high) {
-        if (high.compareTo(low) < 0) {
+        int differenceValue = high.semitone - low.semitone;
+
+        if (differenceValue < 0) {
             throw new IllegalArgumentException("High note lower than low note.");
-        } else if (high.octave.getNumberValue() - low.octave.getNumberValue() > 1) {
-            throw new IllegalArgumentException("Notes can be at most one octave apart.");
         }
 
-        int differenceValue;
+        return getInterval(differenceValue);
+    }
 
-        if (low.octave == high.octave) {
-            differenceValue = high.pitchValue - low.pitchValue;
-        } else {
-            // High must be (one) octave higher than low
-            differenceValue = high.pitchValue + 12 - low.pitchValue;
+    /**
+     * Get the interval spanning a number of half steps, found in the same order as getIntervalBetween().
+     *
+     * @param halfSteps Number of half steps, at least 0.
+     * @return The interval, a shared instance for anything within the MIDI range.
+     */
+    public static Interval getInterval(int halfSteps) {
+        if (halfSteps < 0) {
+            throw new IllegalArgumentException("Intervals span at least 0 half steps: " + halfSteps);
         }
 
-        // First look for perfect interval, then major, then minor, then diminished, then augmented
-        for (Interval[] i : Arrays.asList(PerfectIntervals.values(), MajorIntervals.values(), MinorIntervals.values(),
-                DiminishedIntervals.values(), AugmentedIntervals.values())) {
-            for (Interval j : i) {
-                if (j.getNumHalfSteps() == differenceValue) {
-                    return j;
-                }
-            }
+        return halfSteps < INTERVALS.length ? INTERVALS[halfSteps] : compoundInterval(halfSteps);
+    }
+
+    private static CompoundInterval compoundInterval(int halfSteps) {
+        int octaves = halfSteps / 12;
+        int left = halfSteps % 12;
+
+        if (left == 0) {
+            // e.g. two octaves are an octave plus an octave
+            return new CompoundInterval(PerfectIntervals.OCTAVE, octaves - 1);
         }
 
-        // No nullpointer here
-        return PerfectIntervals.ERROR_INTERVAL;
+        return new CompoundInterval(INTERVALS[left], octaves);
     }
 
     /**
@@ -0,0 +1,59 @@
+package music.play;
+
+import java.util.List;
+
+/**
+ * A single bar of music: the notes and rests of each voice which start between two bar lines.
+ * When streamed from a MIDI file, a note which starts in this bar but sounds past the next bar line belongs to this bar.
+ * A MeasureIndex instead splits such a note at the bar line into tied notes.
+ *
+ * @author reedt
+ */
+public class Measure {
+    public final int number;
+    public final TimeSignature timeSignature;
+    public final List<Voice> voices;
+
+    /**
+     * @param number        Bar number, starting from 1.
+     * @param timeSignature Time signature in effect for this bar.
+     * @param voices        The part of each voice which starts in this bar.
+     */
+    public Measure(int number, TimeSignature timeSignature, List<Voice> voices) {
+        this.number = number;
+        this.timeSignature = timeSignature;
+        this.voices = voices;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format("Measure %d (%d/%d)\n",
+                number, timeSignature.getNumerator(), timeSignature.getDenominator()));
+
+        for (Voice v : voices) {
+            sb.append(v.toString()).append("\n");
+        }
+
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Measure measure = (Measure) o;
+
+        if (number != measure.number) return false;
+        if (!timeSignature.equals(measure.timeSignature)) return false;
+        return voices.equals(measure.voices);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = number;
+        result = 31 * result + timeSignature.hashCode();
+        result = 31 * result + voices.hashCode();
+        return result;
+    }
+}
@@ -0,0 +1,216 @@
+package music.play;
+
+import music.pitch.BasicNote;
+import music.pitch.Chord;
+import music.pitch.Note;
+import music.rhythm.Duration;
+import music.rhythm.Rest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a Staff into bars, using its time signature, one bar at a time as bars are asked for.
+ * <p>
+ * Finding where bar N starts in each voice is a binary search over the voice's onsets, so a renderer or player
+ * can work on a window of bars in a long score without splitting the rest of it. Each bar is built once and kept.
+ * <p>
+ * A note sounding across a bar line is split there: the part in each bar becomes a new note, tied to the next
+ * part, and rests are split the same way without ties. Parts which no single Duration can express are written as
+ * several tied notes. Notes which fit in one bar are the staff's own objects.
+ * The staff must not change while the index is in use.
+ *
+ * @author reedt
+ */
+public class MeasureIndex {
+    private final Staff staff;
+    private final long measureTicks;
+    private final Measure[] measures;
+
+    private Duration[] parts = new Duration[8];
+
+    /**
+     * Create an index over a staff. No bar is built until it is asked for.
+     *
+     * @param staff The staff to split.
+     */
+    public MeasureIndex(Staff staff) {
+        if (staff.timeSignature == null) {
+            throw new IllegalArgumentException("Staff has no time signature to split into bars.");
+        }
+
+        this.staff = staff;
+        this.measureTicks = (long) staff.timeSignature.getNumerator() * Duration.TICKS_PER_WHOLE_NOTE
+                / staff.timeSignature.getDenominator();
+        this.measures = new Measure[Math.toIntExact((staff.getTotalTicks() + measureTicks - 1) / measureTicks)];
+    }
+
+    /**
+     * @return The number of bars in the staff, the last possibly incomplete.
+     */
+    public int size() {
+        return measures.length;
+    }
+
+    /**
+     * @return Length of a full bar, in 1/192 whole note ticks.
+     */
+    public long getMeasureTicks() {
+        return measureTicks;
+    }
+
+    /**
+     * @param tick Time in 1/192 whole note ticks from the start of the staff.
+     * @return Number of the bar sounding at the tick, starting from 1.
+     */
+    public int getMeasureNumberAt(long tick) {
+        if (tick < 0) {
+            throw new IllegalArgumentException("Tick before the start of the staff: " + tick);
+        }
+
+        return Math.toIntExact(tick / measureTicks + 1);
+    }
+
+    /**
+     * Get a bar, building it if this is the first time it is asked for.
+     *
+     * @param number Bar number, starting from 1.
+     * @return The bar.
+     * @throws IndexOutOfBoundsException If there is no such bar.
+     */
+    public Measure getMeasure(int number) {
+        if (number < 1 || number > measures.length) {
+            throw new IndexOutOfBoundsException("Measure " + number + " out of range 1-" + measures.length + ".");
+        }
+
+        Measure m = measures[number - 1];
+
+        if (m == null) {
+            m = buildMeasure(number);
+            measures[number - 1] = m;
+        }
+
+        return m;
+    }
+
+    /**
+     * Get a window of bars, building any not built yet.
+     *
+     * @param from First bar number, inclusive.
+     * @param to   Last bar number, exclusive.
+     * @return The bars, in order.
+     */
+    public List<Measure> getMeasures(int from, int to) {
+        List<Measure> window = new ArrayList<>(Math.max(to - from, 0));
+
+        for (int i = from; i < to; i++) {
+            window.add(getMeasure(i));
+        }
+
+        return window;
+    }
+
+    private Measure buildMeasure(int number) {
+        long start = (number - 1) * measureTicks;
+        long end = start + measureTicks;
+        List<Voice> voices = new ArrayList<>(staff.voices.size());
+
+        for (Voice v : staff.voices) {
+            voices.add(sliceVoice(v, start, end));
+        }
+
+        return new Measure(number, staff.timeSignature, voices);
+    }
+
+    /**
+     * @return The part of a voice sounding from start to end, with notes crossing either end cut to fit.
+     */
+    private Voice sliceVoice(Voice v, long start, long end) {
+        int first = firstNoteStartingFrom(v, start);
+        int last = firstNoteStartingFrom(v, end);
+
+        if (first > 0 && v.getOnset(first - 1) + v.getNote(first - 1).getDuration().getTicks() > start) {
+            // held over from the last bar
+            first--;
+        }
+
+        List<BasicNote> notes = new ArrayList<>(last - first);
+
+        for (int i = first; i < last; i++) {
+            BasicNote b = v.getNote(i);
+            long onset = v.getOnset(i);
+            long noteEnd = onset + b.getDuration().getTicks();
+
+            if (onset >= start && noteEnd <= end) {
+                notes.add(b);
+            } else {
+                addParts(notes, b, Math.max(onset, start), Math.min(noteEnd, end), noteEnd > end);
+            }
+        }
+
+        return new Voice(notes, v.getIndex());
+    }
+
+    /**
+     * Add the part of a note from one tick to another, as tied notes.
+     *
+     * @param tiedOut True if the note goes on past the end of this part.
+     */
+    private void addParts(List<BasicNote> notes, BasicNote b, long from, long to, boolean tiedOut) {
+        int count = Duration.decomposedLength(to - from);
+
+        if (parts.length < count) {
+            parts = new Duration[count];
+        }
+
+        Duration.decompose(to - from, parts, 0);
+        boolean tiedAfter = tiedOut || b instanceof Note && ((Note) b).isTiedToNext();
+
+        for (int i = 0; i < count; i++) {
+            notes.add(copy(b, parts[i], i < count - 1 || tiedAfter));
+        }
+    }
+
+    private static BasicNote copy(BasicNote b, Duration d, boolean tied) {
+        if (b instanceof Rest) {
+            return new Rest(d);
+        }
+
+        if (b instanceof Chord) {
+            List<Note> chord = ((Chord) b).chord;
+            Note[] copies = new Note[chord.size()];
+
+            for (int i = 0; i < copies.length; i++) {
+                copies[i] = (Note) copy(chord.get(i), d, tied);
+            }
+
+            return new Chord(copies);
+        }
+
+        Note n = (Note) b;
+        Note part = new Note(n.basePitch, n.accidental, n.octave, d, n.getIndex());
+        part.setTiedToNext(tied);
+
+        return part;
+    }
+
+    /**
+     * @return Position of the first note starting at or after the tick, or the voice's size if there is none.
+     */
+    private static int firstNoteStartingFrom(Voice v, long tick) {
+        int low = 0;
+        int high = v.size();
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (v.getOnset(mid) < tick) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+}
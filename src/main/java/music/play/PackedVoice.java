@@ -0,0 +1,219 @@
+package music.play;
+
+import music.pitch.BasicNote;
+import music.pitch.Note;
+import music.pitch.NoteScanner;
+import music.pitch.PackedNote;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A voice stored as primitive arrays: one PackedNote int per note, and the tick each note starts at.
+ * A note takes 12 bytes, instead of a Note object with its enums and index, so large corpora fit in memory
+ * and scans over them read contiguous memory.
+ * <p>
+ * Notes are only created when asked for with getNote(), so prefer getPacked() in loops over many notes.
+ *
+ * @author reedt
+ */
+public class PackedVoice implements ReadableVoice {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int index;
+
+    private int[] notes;
+    // start of each note, in 1/192 whole note ticks from the start of the voice
+    private long[] onsets;
+    private int size;
+    private long totalTicks;
+
+    /**
+     * Create an empty voice.
+     *
+     * @param index The index of this voice.
+     */
+    public PackedVoice(int index) {
+        this(index, INITIAL_CAPACITY);
+    }
+
+    private PackedVoice(int index, int capacity) {
+        this.index = index;
+        this.notes = new int[Math.max(capacity, 1)];
+        this.onsets = new long[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Pack the notes of a Voice.
+     *
+     * @param v A Voice of Notes and Rests.
+     * @throws IllegalArgumentException If the voice holds anything else, e.g. a Chord.
+     */
+    public PackedVoice(Voice v) {
+        this(v.getIndex(), v.size());
+
+        for (BasicNote b : v.melody) {
+            add(PackedNote.pack(b));
+        }
+    }
+
+    /**
+     * Parse a voice string of the form [notestring],[notestring],[notestring]... straight into packed notes,
+     * without creating a Note or String per note.
+     *
+     * @param voiceString Voice string of notes and rests.
+     * @param index       The index of the voice.
+     * @return The created object
+     * @throws IllegalArgumentException If the string is malformed or holds a chord.
+     */
+    public static PackedVoice parseVoiceString(CharSequence voiceString, int index) {
+        NoteScanner scanner = new NoteScanner(voiceString);
+        PackedVoice v = new PackedVoice(index, scanner.countRemaining());
+
+        while (scanner.hasNext()) {
+            v.add(scanner.nextPacked());
+        }
+
+        return v;
+    }
+
+    /**
+     * Add a note to the end of this voice.
+     *
+     * @param packedNote The note, see PackedNote.
+     * @return The current object, for chained calls
+     */
+    public PackedVoice add(int packedNote) {
+        if (size == notes.length) {
+            notes = Arrays.copyOf(notes, size * 2);
+            onsets = Arrays.copyOf(onsets, size * 2);
+        }
+
+        notes[size] = packedNote;
+        onsets[size] = totalTicks;
+        size++;
+
+        totalTicks += PackedNote.duration(packedNote).getTicks();
+
+        return this;
+    }
+
+    /**
+     * @param index Position, from 0.
+     * @return The packed note at the position.
+     */
+    public int getPacked(int index) {
+        checkIndex(index);
+
+        return notes[index];
+    }
+
+    @Override
+    public long getOnset(int index) {
+        checkIndex(index);
+
+        return onsets[index];
+    }
+
+    /**
+     * Creates the Note or Rest at a position. Each call creates a new object.
+     */
+    @Override
+    public BasicNote getNote(int index) {
+        return PackedNote.toNote(getPacked(index));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public long getTotalTicks() {
+        return totalTicks;
+    }
+
+    /**
+     * Create a Voice holding this voice's notes as objects.
+     *
+     * @return The new Voice.
+     */
+    public Voice toVoice() {
+        List<BasicNote> melody = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            melody.add(PackedNote.toNote(notes[i]));
+        }
+
+        return new Voice(melody, index);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for voice of " + size + " notes.");
+        }
+    }
+
+    /**
+     * Write the same text as toString(), see Voice.writeTo(). Notes are written straight from their packed ints.
+     *
+     * @param out Where to write the voice, e.g. a Writer.
+     * @throws IOException If out cannot be written to.
+     */
+    public void writeTo(Appendable out) throws IOException {
+        Voice.writeHeader(out, index);
+
+        int padding = 0;
+
+        for (int i = 0; i < size; i++) {
+            Voice.writePadding(out, padding);
+            padding = Note.COMPACT_WIDTH - PackedNote.writeTo(notes[i], out);
+        }
+    }
+
+    /**
+     * @return The same text as Voice.toString() of the same notes.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        try {
+            writeTo(sb);
+        } catch (IOException e) {
+            // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        PackedVoice that = (PackedVoice) o;
+
+        return index == that.index && Arrays.equals(notes, 0, size, that.notes, 0, that.size);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = index;
+
+        for (int i = 0; i < size; i++) {
+            result = 31 * result + notes[i];
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,534 @@
+package music.play;
+
+import music.pitch.BasicNote;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A voice which never changes. Edits return a new version and leave this one as it was, so a version can be handed
+ * to playback or drawing threads and read there without locks while another thread goes on editing.
+ * <p>
+ * Notes are kept in a tree of chunks of up to 32. An edit copies only the chunks on the path down to the note it
+ * changes, O(log n), and the new version shares every other chunk with the old one, so keeping a snapshot is just
+ * keeping a reference. Each chunk also knows the total length of its notes, so finding a note's onset is O(log n),
+ * and stays right after inserts and removals.
+ * <p>
+ * The notes themselves are shared between versions, so must not be changed, e.g. with setDuration().
+ *
+ * @author reedt
+ */
+public final class PersistentVoice implements ReadableVoice, Iterable<BasicNote> {
+    private static final int WIDTH = 32;
+
+    private final Node root;
+    private final int index;
+
+    /**
+     * Create an empty voice.
+     *
+     * @param index The index of this voice.
+     */
+    public PersistentVoice(int index) {
+        this(new Leaf(new BasicNote[0]), index);
+    }
+
+    /**
+     * Take a copy of a Voice's notes as they are now.
+     *
+     * @param v The voice to copy. Must not be changed by another thread while it is copied.
+     */
+    public PersistentVoice(Voice v) {
+        this(v.melody, v.getIndex());
+    }
+
+    /**
+     * @param notes Notes, rests and chords, in order.
+     * @param index The index of this voice.
+     */
+    public PersistentVoice(List<? extends BasicNote> notes, int index) {
+        this(build(notes), index);
+    }
+
+    private PersistentVoice(Node root, int index) {
+        this.root = root;
+        this.index = index;
+    }
+
+    /**
+     * Fill leaves, then the levels above them, as full as they go.
+     */
+    private static Node build(List<? extends BasicNote> notes) {
+        if (notes.isEmpty()) {
+            return new Leaf(new BasicNote[0]);
+        }
+
+        BasicNote[] all = notes.toArray(new BasicNote[0]);
+        List<Node> level = new ArrayList<>((all.length + WIDTH - 1) / WIDTH);
+
+        for (int i = 0; i < all.length; i += WIDTH) {
+            level.add(new Leaf(Arrays.copyOfRange(all, i, Math.min(i + WIDTH, all.length))));
+        }
+
+        while (level.size() > 1) {
+            List<Node> above = new ArrayList<>((level.size() + WIDTH - 1) / WIDTH);
+
+            for (int i = 0; i < level.size(); i += WIDTH) {
+                above.add(new Branch(level.subList(i, Math.min(i + WIDTH, level.size())).toArray(new Node[0])));
+            }
+
+            level = above;
+        }
+
+        return level.get(0);
+    }
+
+    /**
+     * Add a note to the end.
+     *
+     * @param b Note, rest or chord.
+     * @return The new version.
+     */
+    public PersistentVoice append(BasicNote b) {
+        return insert(root.size(), b);
+    }
+
+    /**
+     * Insert a note, moving it and every note after it along.
+     *
+     * @param index Position the note will have, from 0 to size().
+     * @param b     Note, rest or chord.
+     * @return The new version.
+     */
+    public PersistentVoice insert(int index, BasicNote b) {
+        if (index < 0 || index > root.size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for voice of " + root.size()
+                    + " notes.");
+        }
+
+        Node[] parts = root.insert(index, b);
+
+        return new PersistentVoice(parts.length == 1 ? parts[0] : new Branch(parts), this.index);
+    }
+
+    /**
+     * Replace the note at a position.
+     *
+     * @param index Position, from 0.
+     * @param b     Note, rest or chord.
+     * @return The new version.
+     */
+    public PersistentVoice set(int index, BasicNote b) {
+        checkIndex(index);
+
+        return new PersistentVoice(root.set(index, b), this.index);
+    }
+
+    /**
+     * Remove the note at a position, moving every note after it back.
+     *
+     * @param index Position, from 0.
+     * @return The new version.
+     */
+    public PersistentVoice remove(int index) {
+        checkIndex(index);
+
+        Node r = root.remove(index);
+
+        if (r == null) {
+            r = new Leaf(new BasicNote[0]);
+        }
+
+        while (r instanceof Branch && ((Branch) r).children.length == 1) {
+            r = ((Branch) r).children[0];
+        }
+
+        return new PersistentVoice(r, this.index);
+    }
+
+    @Override
+    public int size() {
+        return root.size();
+    }
+
+    @Override
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public BasicNote getNote(int index) {
+        checkIndex(index);
+
+        return root.get(index);
+    }
+
+    @Override
+    public long getOnset(int index) {
+        checkIndex(index);
+
+        return root.onset(index);
+    }
+
+    @Override
+    public long getTotalTicks() {
+        return root.ticks();
+    }
+
+    /**
+     * Walks the notes a chunk at a time.
+     */
+    @Override
+    public Iterator<BasicNote> iterator() {
+        return new Iterator<>() {
+            private int next;
+            private Leaf leaf;
+            private int leafStart;
+
+            @Override
+            public boolean hasNext() {
+                return next < root.size();
+            }
+
+            @Override
+            public BasicNote next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                if (leaf == null || next - leafStart == leaf.notes.length) {
+                    // the last leaf ended just before next, so next starts a leaf
+                    leaf = root.leafAt(next);
+                    leafStart = next;
+                }
+
+                return leaf.notes[next++ - leafStart];
+            }
+        };
+    }
+
+    /**
+     * Create a Voice holding this voice's notes, which can be changed without changing this one.
+     *
+     * @return The new Voice.
+     */
+    public Voice toVoice() {
+        List<BasicNote> melody = new ArrayList<>(root.size());
+
+        for (BasicNote b : this) {
+            melody.add(b);
+        }
+
+        return new Voice(melody, index);
+    }
+
+    /**
+     * Write the same text as toString(), see Voice.writeTo().
+     *
+     * @param out Where to write the voice, e.g. a Writer.
+     * @throws IOException If out cannot be written to.
+     */
+    public void writeTo(Appendable out) throws IOException {
+        Voice.writeTo(out, index, this);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= root.size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for voice of " + root.size()
+                    + " notes.");
+        }
+    }
+
+    /**
+     * @return The same text as Voice.toString() of the same notes.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        try {
+            writeTo(sb);
+        } catch (IOException e) {
+            // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        PersistentVoice that = (PersistentVoice) o;
+
+        if (index != that.index || size() != that.size()) return false;
+
+        Iterator<BasicNote> other = that.iterator();
+
+        for (BasicNote b : this) {
+            if (!b.equals(other.next())) return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+
+        for (BasicNote b : this) {
+            result = 31 * result + b.hashCode();
+        }
+
+        return 31 * result + index;
+    }
+
+    private abstract static class Node {
+        abstract int size();
+
+        abstract long ticks();
+
+        abstract BasicNote get(int i);
+
+        abstract long onset(int i);
+
+        abstract Leaf leafAt(int i);
+
+        abstract Node set(int i, BasicNote b);
+
+        /**
+         * @return The new node, or two if it grew past WIDTH and had to split.
+         */
+        abstract Node[] insert(int i, BasicNote b);
+
+        /**
+         * @return The new node, or null if it is left empty.
+         */
+        abstract Node remove(int i);
+
+        /**
+         * Where to split a node grown to WIDTH + 1 entries. Appending fills the left node, so voices built by
+         * appending stay packed; otherwise split in half.
+         */
+        static int splitPoint(int length, boolean appended) {
+            return appended ? length - 1 : length / 2;
+        }
+    }
+
+    private static final class Leaf extends Node {
+        final BasicNote[] notes;
+        // ends[i] is the tick note i ends at, from the start of this leaf
+        final long[] ends;
+
+        Leaf(BasicNote[] notes) {
+            this.notes = notes;
+            this.ends = new long[notes.length];
+
+            long tick = 0;
+
+            for (int i = 0; i < notes.length; i++) {
+                tick += notes[i].getDuration().getTicks();
+                ends[i] = tick;
+            }
+        }
+
+        @Override
+        int size() {
+            return notes.length;
+        }
+
+        @Override
+        long ticks() {
+            return notes.length == 0 ? 0 : ends[notes.length - 1];
+        }
+
+        @Override
+        BasicNote get(int i) {
+            return notes[i];
+        }
+
+        @Override
+        long onset(int i) {
+            return i == 0 ? 0 : ends[i - 1];
+        }
+
+        @Override
+        Leaf leafAt(int i) {
+            return this;
+        }
+
+        @Override
+        Node set(int i, BasicNote b) {
+            BasicNote[] copy = notes.clone();
+            copy[i] = b;
+
+            return new Leaf(copy);
+        }
+
+        @Override
+        Node[] insert(int i, BasicNote b) {
+            BasicNote[] copy = new BasicNote[notes.length + 1];
+            System.arraycopy(notes, 0, copy, 0, i);
+            copy[i] = b;
+            System.arraycopy(notes, i, copy, i + 1, notes.length - i);
+
+            if (copy.length <= WIDTH) {
+                return new Node[]{new Leaf(copy)};
+            }
+
+            int split = splitPoint(copy.length, i == notes.length);
+
+            return new Node[]{new Leaf(Arrays.copyOfRange(copy, 0, split)),
+                    new Leaf(Arrays.copyOfRange(copy, split, copy.length))};
+        }
+
+        @Override
+        Node remove(int i) {
+            if (notes.length == 1) {
+                return null;
+            }
+
+            BasicNote[] copy = new BasicNote[notes.length - 1];
+            System.arraycopy(notes, 0, copy, 0, i);
+            System.arraycopy(notes, i + 1, copy, i, copy.length - i);
+
+            return new Leaf(copy);
+        }
+    }
+
+    private static final class Branch extends Node {
+        final Node[] children;
+        // sizes[c] and ends[c] are the notes and ticks up to the end of child c
+        final int[] sizes;
+        final long[] ends;
+
+        Branch(Node[] children) {
+            this.children = children;
+            this.sizes = new int[children.length];
+            this.ends = new long[children.length];
+
+            int size = 0;
+            long tick = 0;
+
+            for (int c = 0; c < children.length; c++) {
+                size += children[c].size();
+                tick += children[c].ticks();
+                sizes[c] = size;
+                ends[c] = tick;
+            }
+        }
+
+        @Override
+        int size() {
+            return sizes[sizes.length - 1];
+        }
+
+        @Override
+        long ticks() {
+            return ends[ends.length - 1];
+        }
+
+        /**
+         * @return The first child ending after note i, or, with i == size(), the last child.
+         */
+        private int childOf(int i) {
+            int low = 0;
+            int high = children.length - 1;
+
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+
+                if (sizes[mid] > i) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+
+            return low;
+        }
+
+        private int start(int c) {
+            return c == 0 ? 0 : sizes[c - 1];
+        }
+
+        @Override
+        BasicNote get(int i) {
+            int c = childOf(i);
+
+            return children[c].get(i - start(c));
+        }
+
+        @Override
+        long onset(int i) {
+            int c = childOf(i);
+
+            return (c == 0 ? 0 : ends[c - 1]) + children[c].onset(i - start(c));
+        }
+
+        @Override
+        Leaf leafAt(int i) {
+            int c = childOf(i);
+
+            return children[c].leafAt(i - start(c));
+        }
+
+        @Override
+        Node set(int i, BasicNote b) {
+            int c = childOf(i);
+            Node[] copy = children.clone();
+            copy[c] = children[c].set(i - start(c), b);
+
+            return new Branch(copy);
+        }
+
+        @Override
+        Node[] insert(int i, BasicNote b) {
+            int c = childOf(i);
+            Node[] parts = children[c].insert(i - start(c), b);
+            Node[] copy = new Node[children.length + parts.length - 1];
+            System.arraycopy(children, 0, copy, 0, c);
+            System.arraycopy(parts, 0, copy, c, parts.length);
+            System.arraycopy(children, c + 1, copy, c + parts.length, children.length - c - 1);
+
+            if (copy.length <= WIDTH) {
+                return new Node[]{new Branch(copy)};
+            }
+
+            int split = splitPoint(copy.length, i == size());
+
+            return new Node[]{new Branch(Arrays.copyOfRange(copy, 0, split)),
+                    new Branch(Arrays.copyOfRange(copy, split, copy.length))};
+        }
+
+        @Override
+        Node remove(int i) {
+            int c = childOf(i);
+            Node child = children[c].remove(i - start(c));
+
+            if (child != null) {
+                Node[] copy = children.clone();
+                copy[c] = child;
+
+                return new Branch(copy);
+            }
+
+            if (children.length == 1) {
+                return null;
+            }
+
+            Node[] copy = new Node[children.length - 1];
+            System.arraycopy(children, 0, copy, 0, c);
+            System.arraycopy(children, c + 1, copy, c, copy.length - c);
+
+            return new Branch(copy);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package music.play;
+
+import music.pitch.BasicNote;
+import music.rhythm.Duration;
+
+/**
+ * Read access to the notes of a voice, whether stored as objects (Voice) or packed (PackedVoice).
+ *
+ * @author reedt
+ */
+public interface ReadableVoice {
+    /**
+     * @return The number of notes and rests.
+     */
+    int size();
+
+    /**
+     * @return The index of this voice.
+     */
+    int getIndex();
+
+    /**
+     * Get the Note or Rest at a position in the voice.
+     *
+     * @param index Position, from 0.
+     * @return The note.
+     */
+    BasicNote getNote(int index);
+
+    /**
+     * Sum all note values in this voice exactly.
+     *
+     * @return Their total duration, in 1/192 whole note ticks.
+     */
+    long getTotalTicks();
+
+    /**
+     * @param index Position, from 0.
+     * @return The tick the note at the position starts at, in 1/192 whole note ticks from the start of the voice.
+     */
+    long getOnset(int index);
+
+    /**
+     * Find the note sounding at a time, by binary search over the onsets.
+     *
+     * @param tick Time in 1/192 whole note ticks from the start of the voice.
+     * @return Position of the note or rest sounding at the tick, or -1 if the tick is outside the voice.
+     */
+    default int getNoteIndexAt(long tick) {
+        if (tick < 0 || tick >= getTotalTicks()) {
+            return -1;
+        }
+
+        return lastNoteStartingBy(tick);
+    }
+
+    /**
+     * @return Position of the last note starting at or before the tick, or -1 if there is none.
+     * Of several notes starting at the same tick, only the last can last longer than zero ticks.
+     */
+    private int lastNoteStartingBy(long tick) {
+        int low = 0;
+        int high = size() - 1;
+        int found = -1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+
+            if (getOnset(mid) <= tick) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Find the notes sounding at any time from startTick up to, but not including, endTick.
+     *
+     * @param startTick Start of the span in 1/192 whole note ticks, inclusive.
+     * @param endTick   End of the span, exclusive.
+     * @return Positions of the first note in the span and one past the last, {from, to}; from == to if there are none.
+     */
+    default int[] getNoteIndexRange(long startTick, long endTick) {
+        long total = getTotalTicks();
+
+        if (endTick <= startTick || endTick <= 0 || startTick >= total) {
+            int at = startTick >= total ? size() : 0;
+            return new int[]{at, at};
+        }
+
+        int from = startTick <= 0 ? 0 : lastNoteStartingBy(startTick);
+        int to = lastNoteStartingBy(endTick - 1) + 1;
+
+        return new int[]{from, to};
+    }
+
+    /**
+     * Sum all note values in this voice.
+     *
+     * @return Their total duration, represented in beats.
+     */
+    default double getTotalDurationValue() {
+        return getTotalTicks() / (double) Duration.TICKS_PER_WHOLE_NOTE;
+    }
+
+    /**
+     * Sum all note values in this voice, producing an array of largest-value Durations.
+     *
+     * @return An array of Durations, in the largest possible units.
+     */
+    default Duration[] getTotalDuration() {
+        return Duration.generateMultipleDurationsFromTicks(getTotalTicks());
+    }
+}
@@ -1,28 +1,38 @@
 package music.play;
 
-import music.pitch.BasicNote;
 import music.pitch.Note;
 import music.play.key.Key;
 import music.play.key.KeySignature;
-import music.rhythm.Duration;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Stack;
-import java.util.stream.Collectors;
 
 /**
  * @author reedt
  */
 public class Staff {
+    /**
+     * Tempo at the start of the piece.
+     */
     public final Tempo tempo;
+    /**
+     * Every tempo change of the piece, for converting between ticks and time.
+     * Null only if tempo is. Not compared by equals, since one piece can be written at many resolutions.
+     */
+    public final TempoMap tempoMap;
     public final KeySignature keySignature;
     public final TimeSignature timeSignature;
     public final List<Voice> voices;
 
+    // columns of getAlignedStaff(), as wide as a compact note
+    private static final String HELD = "-------";
+    private static final String ENDED = "       ";
+
     public Staff(Tempo tempo, Key key, TimeSignature timeSignature, List<Voice> voices) {
         this.tempo = tempo;
+        this.tempoMap = tempo == null ? null : TempoMap.constant(tempo, TempoMap.DEFAULT_RESOLUTION);
         this.voices = voices;
         this.keySignature = key == null ? null : key.getKeySignature();
         this.timeSignature = timeSignature;
@@ -30,6 +40,7 @@ public class Staff {
 
     public Staff(Tempo tempo, Key key, TimeSignature timeSignature, Voice[] voices) {
         this.tempo = tempo;
+        this.tempoMap = tempo == null ? null : TempoMap.constant(tempo, TempoMap.DEFAULT_RESOLUTION);
         this.voices = Arrays.asList(voices);
         this.keySignature = key == null ? null : key.getKeySignature();
         this.timeSignature = timeSignature;
@@ -37,6 +48,7 @@ public class Staff {
 
     public Staff(Tempo tempo, TimeSignature ts, Voice[] voices) {
         this.tempo = tempo;
+        this.tempoMap = tempo == null ? null : TempoMap.constant(tempo, TempoMap.DEFAULT_RESOLUTION);
         this.voices = Arrays.asList(voices);
         this.keySignature = null;
         this.timeSignature = ts;
@@ -44,6 +56,20 @@ public class Staff {
 
     public Staff(Tempo tempo, TimeSignature ts, List<Voice> voices) {
         this.tempo = tempo;
+        this.tempoMap = tempo == null ? null : TempoMap.constant(tempo, TempoMap.DEFAULT_RESOLUTION);
+        this.voices = voices;
+        this.keySignature = null;
+        this.timeSignature = ts;
+    }
+
+    /**
+     * Create a Staff whose tempo changes during the piece.
+     *
+     * @param tempoMap The piece's tempo changes, starting at tick 0.
+     */
+    public Staff(TempoMap tempoMap, TimeSignature ts, List<Voice> voices) {
+        this.tempo = tempoMap.getTempo(0);
+        this.tempoMap = tempoMap;
         this.voices = voices;
         this.keySignature = null;
         this.timeSignature = ts;
@@ -51,48 +77,86 @@ public class Staff {
 
     @Override
     public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        try {
+            writeTo(sb);
+        } catch (IOException e) {
+            // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Write the same text as toString(), streaming each voice a note at a time, so dumping a large staff or corpus
+     * to a Writer needs no String per note or per voice.
+     *
+     * @param out Where to write the staff, e.g. a Writer.
+     * @throws IOException If out cannot be written to.
+     */
+    public void writeTo(Appendable out) throws IOException {
         String kString = keySignature == null ? "n/a" : keySignature.toString();
 
-        String staffInfo = String.format("Staff: Tempo: %d bpm, Key %s, Time Signature %d/%d\n",
-                tempo.bpm, kString, timeSignature.getNumerator(), timeSignature.getDenominator());
-        StringBuilder voiceString = new StringBuilder();
+        out.append("Staff: Tempo: ").append(Integer.toString(tempo.bpm))
+                .append(" bpm, Key ").append(kString)
+                .append(", Time Signature ").append(Integer.toString(timeSignature.getNumerator()))
+                .append('/').append(Integer.toString(timeSignature.getDenominator())).append("\n\n");
+
         for (Voice v: voices) {
-            voiceString.append(v.toString()).append("\n");
+            v.writeTo(out);
+            out.append('\n');
         }
-
-        return staffInfo + "\n" + voiceString;
     }
 
-    public String getAlignedStaff() {
-        // init lines
-        ArrayList<StringBuilder> lines = new ArrayList<>(voices.stream().
-                map(voice -> new StringBuilder(voice.getNote(0).toString())).collect(Collectors.toList()));
+    /**
+     * @return Length of the longest voice, in 1/192 whole note ticks.
+     */
+    public long getTotalTicks() {
+        long max = 0;
 
-        // init to 0 for each voice
-        ArrayList<Integer> posPointers = voices.stream().
-                map(v -> 0).collect(Collectors.toCollection(ArrayList::new));
+        for (Voice v : voices) {
+            max = Math.max(max, v.getTotalTicks());
+        }
 
-        Duration minResolution = new Duration(Duration.DurationValue.WHOLE, false);
+        return max;
+    }
 
-        for (int i = 0; i < voices.size(); i++) {
-            Voice v = voices.get(i);
-            // pull the note at each pointer's location
-            BasicNote n = v.getNote(posPointers.get(i));
+    /**
+     * @return A cursor over the vertical slices of this staff's voices.
+     */
+    public StaffCursor cursor() {
+        return new StaffCursor(voices);
+    }
 
-            if (n.getDuration().compareTo(minResolution) < 0) {
-                minResolution = n.getDuration();
-            }
+    /**
+     * Prints the voices one above the other, with notes sounding at the same time in the same column.
+     * Every slice of the staff gets a column: a note starting there is printed in compact form,
+     * a note held from before as dashes, and a voice which has ended as spaces.
+     *
+     * @return One line per voice.
+     */
+    public String getAlignedStaff() {
+        StringBuilder[] lines = new StringBuilder[voices.size()];
+
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = new StringBuilder("Voice " + voices.get(i).getIndex() + ":");
         }
 
-        // min resolution gets incremented, others do not
-        for (int i = 0; i < voices.size(); i++) {
-            Voice v = voices.get(i);
-            BasicNote n = v.getNote(posPointers.get(i));
+        StaffCursor c = cursor();
+
+        while (c.next()) {
+            for (int i = 0; i < lines.length; i++) {
+                lines[i].append(' ');
 
-            if (n.getDuration().equals(minResolution)) {
-                lines.get(i).append(n.toString());
-            } else {
-                lines.get(i).append("...");
+                if (c.isOnset(i)) {
+                    lines[i].append(Note.compactFormatBasicNote(c.getNote(i)));
+                } else if (c.getNoteIndex(i) != -1) {
+                    lines[i].append(HELD);
+                } else {
+                    lines[i].append(ENDED);
+                }
             }
         }
 
@@ -102,7 +166,6 @@ public class Staff {
             sb.append(line).append("\n");
         }
 
-        //TODO
         return sb + "\n";
     }
 
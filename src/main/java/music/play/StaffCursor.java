@@ -0,0 +1,242 @@
+package music.play;
+
+import music.pitch.BasicNote;
+
+import java.util.List;
+
+/**
+ * Walks every voice of a staff together, one vertical slice at a time.
+ * <p>
+ * A slice starts at each tick where any voice starts a note or rest, or where a voice ends while others go on.
+ * For each slice the cursor knows, per voice, which note is sounding and whether it starts there or is held over
+ * from an earlier slice. Voices are merged by onset with a heap, so walking a whole staff of n notes in v voices
+ * takes O(n log v), and moving the cursor allocates nothing.
+ * <pre>
+ * StaffCursor c = staff.cursor();
+ * while (c.next()) {
+ *     for (int v = 0; v &lt; c.voiceCount(); v++) {
+ *         if (c.isOnset(v)) ...
+ *     }
+ * }
+ * </pre>
+ * The voices must not change while the cursor walks them.
+ *
+ * @author reedt
+ */
+public class StaffCursor {
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private final List<? extends ReadableVoice> voices;
+
+    // per voice: the next note to start, the note sounding (-1 if none), whether it started in this slice,
+    // and the tick of the voice's next event, either its next note starting or its last note ending
+    private final int[] nextNote;
+    private final int[] sounding;
+    private final boolean[] onset;
+    private final long[] nextEvent;
+
+    // voices ordered by nextEvent, as a binary min heap
+    private final int[] heap;
+    private int heapSize;
+
+    private long tick;
+    private long sliceEnd;
+    private int active;
+
+    /**
+     * Create a cursor before the first slice of some voices, which all start at tick 0.
+     *
+     * @param voices The voices to walk.
+     */
+    public StaffCursor(List<? extends ReadableVoice> voices) {
+        this.voices = voices;
+
+        nextNote = new int[voices.size()];
+        sounding = new int[voices.size()];
+        onset = new boolean[voices.size()];
+        nextEvent = new long[voices.size()];
+        heap = new int[voices.size()];
+
+        reset();
+    }
+
+    /**
+     * Move back before the first slice.
+     */
+    public void reset() {
+        heapSize = 0;
+        active = 0;
+        tick = -1;
+        sliceEnd = 0;
+
+        for (int v = 0; v < voices.size(); v++) {
+            nextNote[v] = 0;
+            sounding[v] = -1;
+            onset[v] = false;
+
+            if (voices.get(v).size() > 0) {
+                nextEvent[v] = 0;
+                push(v);
+            } else {
+                nextEvent[v] = NEVER;
+            }
+        }
+    }
+
+    /**
+     * Move to the next slice.
+     *
+     * @return False if every voice has ended, so there is no next slice.
+     */
+    public boolean next() {
+        if (heapSize == 0) {
+            return false;
+        }
+
+        tick = nextEvent[heap[0]];
+
+        for (int v = 0; v < onset.length; v++) {
+            onset[v] = false;
+        }
+
+        while (heapSize > 0 && nextEvent[heap[0]] == tick) {
+            int v = pop();
+            ReadableVoice voice = voices.get(v);
+
+            if (nextNote[v] < voice.size()) {
+                if (sounding[v] == -1) {
+                    active++;
+                }
+
+                // of several notes starting here, all but the last last zero ticks
+                do {
+                    sounding[v] = nextNote[v]++;
+                } while (nextNote[v] < voice.size() && voice.getOnset(nextNote[v]) == tick);
+
+                onset[v] = true;
+                nextEvent[v] = nextNote[v] < voice.size() ? voice.getOnset(nextNote[v]) : voice.getTotalTicks();
+
+                if (nextEvent[v] > tick) {
+                    push(v);
+                } else {
+                    // a zero length note ends the voice
+                    sounding[v] = -1;
+                    onset[v] = false;
+                    active--;
+                    nextEvent[v] = NEVER;
+                }
+            } else {
+                // the voice's last note ends here
+                sounding[v] = -1;
+                active--;
+                nextEvent[v] = NEVER;
+            }
+        }
+
+        if (active == 0) {
+            heapSize = 0;
+            return false;
+        }
+
+        sliceEnd = nextEvent[heap[0]];
+
+        return true;
+    }
+
+    /**
+     * @return The tick this slice starts at, in 1/192 whole note ticks.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * @return Length of this slice in ticks, until the next slice starts or every voice ends.
+     */
+    public long getLength() {
+        return sliceEnd - tick;
+    }
+
+    /**
+     * @return The number of voices walked, sounding or not.
+     */
+    public int voiceCount() {
+        return voices.size();
+    }
+
+    /**
+     * @param voice Position of the voice in the staff.
+     * @return Position in the voice of the note sounding in this slice, or -1 if the voice has ended.
+     */
+    public int getNoteIndex(int voice) {
+        return sounding[voice];
+    }
+
+    /**
+     * @param voice Position of the voice in the staff.
+     * @return The note sounding in this slice, or null if the voice has ended.
+     */
+    public BasicNote getNote(int voice) {
+        return sounding[voice] == -1 ? null : voices.get(voice).getNote(sounding[voice]);
+    }
+
+    /**
+     * @param voice Position of the voice in the staff.
+     * @return True if the voice's note starts in this slice, false if it is held from before or the voice has ended.
+     */
+    public boolean isOnset(int voice) {
+        return onset[voice];
+    }
+
+    private void push(int v) {
+        int i = heapSize++;
+
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+
+            if (!before(v, heap[parent])) {
+                break;
+            }
+
+            heap[i] = heap[parent];
+            i = parent;
+        }
+
+        heap[i] = v;
+    }
+
+    private int pop() {
+        int top = heap[0];
+        int last = heap[--heapSize];
+        int i = 0;
+
+        while (true) {
+            int child = 2 * i + 1;
+
+            if (child >= heapSize) {
+                break;
+            }
+
+            if (child + 1 < heapSize && before(heap[child + 1], heap[child])) {
+                child++;
+            }
+
+            if (!before(heap[child], last)) {
+                break;
+            }
+
+            heap[i] = heap[child];
+            i = child;
+        }
+
+        if (heapSize > 0) {
+            heap[i] = last;
+        }
+
+        return top;
+    }
+
+    private boolean before(int a, int b) {
+        return nextEvent[a] < nextEvent[b] || nextEvent[a] == nextEvent[b] && a < b;
+    }
+}
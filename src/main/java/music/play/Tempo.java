@@ -19,7 +19,7 @@ public class Tempo {
      * @param bpm
      */
     public Tempo(int bpm) {
-        this.note = new Duration(Duration.DurationValue.QUARTER, false);
+        this.note = Duration.of(Duration.DurationValue.QUARTER, false);
         this.bpm = bpm;
     }
 
@@ -30,7 +30,7 @@ public class Tempo {
      * @param tempo
      */
     public Tempo(CommonTempos tempo) {
-        this.note = new Duration(Duration.DurationValue.QUARTER, false);
+        this.note = Duration.of(Duration.DurationValue.QUARTER, false);
         this.bpm = tempo.bpm;
     }
 
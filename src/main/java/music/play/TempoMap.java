@@ -0,0 +1,246 @@
+package music.play;
+
+import music.rhythm.Duration;
+
+import java.util.Arrays;
+
+/**
+ * Every tempo of a piece, as segments starting at a tick, each with a fixed number of microseconds per quarter note
+ * and the time at which it starts. Converting between ticks and time is a binary search for the segment, so seeking
+ * into a long piece costs the same as seeking near its start.
+ * <p>
+ * Before the first tempo is added, the whole piece plays at 120 bpm, as in a MIDI file without tempo markings.
+ *
+ * @author reedt
+ */
+public class TempoMap {
+    /**
+     * 120 quarter note beats per minute.
+     */
+    public static final int DEFAULT_MICROSECONDS_PER_QUARTER = 500_000;
+
+    /**
+     * Resolution of maps built from a single Tempo, rather than read from a file.
+     */
+    public static final int DEFAULT_RESOLUTION = 480;
+
+    private static final long MICROSECONDS_PER_MINUTE = 60_000_000;
+
+    private static final Duration QUARTER = Duration.of(Duration.DurationValue.QUARTER, false);
+
+    /**
+     * Ticks per quarter note.
+     */
+    public final int resolution;
+
+    // segment i starts at ticks[i] and startMicros[i], and lasts until the next segment
+    private long[] ticks = new long[4];
+    private int[] microsPerQuarter = new int[4];
+    private long[] startMicros = new long[4];
+    private int size = 1;
+
+    /**
+     * Create a map at 120 bpm, to which tempo changes can be added.
+     *
+     * @param resolution Ticks per quarter note.
+     */
+    public TempoMap(int resolution) {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("Resolution must be positive: " + resolution);
+        }
+
+        this.resolution = resolution;
+        microsPerQuarter[0] = DEFAULT_MICROSECONDS_PER_QUARTER;
+    }
+
+    /**
+     * Create a map which keeps one tempo for the whole piece.
+     *
+     * @param t          The tempo.
+     * @param resolution Ticks per quarter note.
+     */
+    public static TempoMap constant(Tempo t, int resolution) {
+        TempoMap map = new TempoMap(resolution);
+        // a beat may be something other than a quarter note
+        long beatTicks = t.note.getTicks();
+        long quarterTicks = Duration.TICKS_PER_WHOLE_NOTE / 4;
+        map.addTempo(0, (int) Math.round(MICROSECONDS_PER_MINUTE * quarterTicks / (double) (t.bpm * beatTicks)));
+
+        return map;
+    }
+
+    /**
+     * Change tempo at a tick. Tempo changes must be added in tick order; a second change at the same tick
+     * replaces the first.
+     *
+     * @param tick                  Tick the new tempo starts at.
+     * @param microsecondsPerQuarter Length of a quarter note from the tick on.
+     */
+    public void addTempo(long tick, int microsecondsPerQuarter) {
+        if (microsecondsPerQuarter <= 0) {
+            throw new IllegalArgumentException("Microseconds per quarter note must be positive: " + microsecondsPerQuarter);
+        }
+
+        int last = size - 1;
+
+        if (tick < ticks[last]) {
+            throw new IllegalArgumentException("Tempo change at tick " + tick + " added after one at tick " + ticks[last] + ".");
+        }
+
+        if (tick == ticks[last]) {
+            microsPerQuarter[last] = microsecondsPerQuarter;
+            return;
+        }
+
+        if (microsecondsPerQuarter == microsPerQuarter[last]) {
+            // no change
+            return;
+        }
+
+        if (size == ticks.length) {
+            ticks = Arrays.copyOf(ticks, size * 2);
+            microsPerQuarter = Arrays.copyOf(microsPerQuarter, size * 2);
+            startMicros = Arrays.copyOf(startMicros, size * 2);
+        }
+
+        ticks[size] = tick;
+        microsPerQuarter[size] = microsecondsPerQuarter;
+        startMicros[size] = startMicros[last] + segmentMicros(last, tick - ticks[last]);
+        size++;
+    }
+
+    /**
+     * @return Time in microseconds from the start of the piece to the tick.
+     */
+    public long tickToMicros(long tick) {
+        int i = segmentAtTick(tick);
+
+        return startMicros[i] + segmentMicros(i, tick - ticks[i]);
+    }
+
+    /**
+     * @return The last tick at or before a time in microseconds from the start of the piece.
+     */
+    public long microsToTick(long micros) {
+        int i = segmentAt(startMicros, micros);
+
+        return ticks[i] + Math.floorDiv((micros - startMicros[i]) * resolution, microsPerQuarter[i]);
+    }
+
+    /**
+     * @return Length in microseconds of the span of ticks from start to end.
+     */
+    public long getDurationMicros(long startTick, long endTick) {
+        return tickToMicros(endTick) - tickToMicros(startTick);
+    }
+
+    /**
+     * Length in microseconds of a Duration starting at a tick. A note which ends before the next tempo change, as
+     * nearly every note does, is timed by its ratio to a quarter note, read from Duration's table, so playback timing
+     * costs one lookup per note. Only a note sounding across a tempo change is timed segment by segment.
+     *
+     * @return Length in microseconds of a Duration starting at a tick.
+     */
+    public long getDurationMicros(long startTick, Duration d) {
+        int i = segmentAtTick(startTick);
+
+        if (i + 1 < size && startTick + durationToTicks(d) > ticks[i + 1]) {
+            return getDurationMicros(startTick, startTick + durationToTicks(d));
+        }
+
+        return (long) (d.getDurationRatio(QUARTER) * microsPerQuarter[i]);
+    }
+
+    /**
+     * @return Length of a Duration in ticks.
+     */
+    public long durationToTicks(Duration d) {
+        return (long) d.getTicks() * 4 * resolution / Duration.TICKS_PER_WHOLE_NOTE;
+    }
+
+    /**
+     * @return Microseconds per quarter note at a tick.
+     */
+    public int getMicrosecondsPerQuarter(long tick) {
+        return microsPerQuarter[segmentAtTick(tick)];
+    }
+
+    /**
+     * @return The tempo at a tick, in quarter note beats per minute.
+     */
+    public Tempo getTempo(long tick) {
+        return new Tempo((int) Math.round(MICROSECONDS_PER_MINUTE / (double) getMicrosecondsPerQuarter(tick)));
+    }
+
+    /**
+     * @return Number of tempo segments, at least 1.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The tick segment i starts at.
+     */
+    public long getSegmentTick(int i) {
+        return ticks[i];
+    }
+
+    /**
+     * @return Microseconds per quarter note of segment i.
+     */
+    public int getSegmentMicrosecondsPerQuarter(int i) {
+        return microsPerQuarter[i];
+    }
+
+    private long segmentMicros(int segment, long ticks) {
+        return Math.floorDiv(ticks * microsPerQuarter[segment], resolution);
+    }
+
+    private int segmentAtTick(long tick) {
+        return segmentAt(ticks, tick);
+    }
+
+    /**
+     * @return Index of the last segment starting at or before key, or 0 if key is before every segment.
+     */
+    private int segmentAt(long[] starts, long key) {
+        int i = Arrays.binarySearch(starts, 0, size, key);
+
+        if (i < 0) {
+            // insertion point is the first segment after key
+            i = -i - 2;
+        } else {
+            // a segment shorter than a microsecond starts at the same time as the next one, which is in effect
+            while (i + 1 < size && starts[i + 1] == key) {
+                i++;
+            }
+        }
+
+        return Math.max(i, 0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        TempoMap tempoMap = (TempoMap) o;
+
+        return resolution == tempoMap.resolution && size == tempoMap.size
+                && Arrays.equals(ticks, 0, size, tempoMap.ticks, 0, size)
+                && Arrays.equals(microsPerQuarter, 0, size, tempoMap.microsPerQuarter, 0, size);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = resolution;
+
+        for (int i = 0; i < size; i++) {
+            result = 31 * result + Long.hashCode(ticks[i]);
+            result = 31 * result + microsPerQuarter[i];
+        }
+
+        return result;
+    }
+}
@@ -2,20 +2,34 @@ package music.play;
 
 import music.pitch.BasicNote;
 import music.pitch.Note;
-import music.rhythm.Duration;
-import music.rhythm.Rest;
+import music.pitch.NoteScanner;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 /**
+ * A single line of notes, rests and chords.
+ * <p>
+ * The tick each note starts at is kept in a prefix sum index, built when first needed and extended as notes are
+ * added, so the total length is O(1) and finding the notes at a time is a binary search. Replacing a note with
+ * addNote(n, index) drops the index from that note on. Changing the melody list directly, or the duration of a note
+ * already in the voice, must be followed by invalidateOnsets().
+ *
  * @author reedt
  */
-public class Voice {
+public class Voice implements ReadableVoice {
     public List<BasicNote> melody;
     private int index;
 
+    // onsets[i] is the tick note i starts at, and onsets[i + 1] the tick it ends at, for every i < indexed
+    private long[] onsets = new long[1];
+    private int indexed;
+
     public Voice(BasicNote[] melody) {
         this.melody = Arrays.asList(melody);
         this.index = 0;
@@ -47,20 +61,20 @@ public class Voice {
 
     /**
      * Create a Voice out of multiple Note strings of the form [notestring],[notestring],[notestring]...
+     * Rests and chords may appear in place of any note string.
+     * <p>
+     * The string is read in one pass with a NoteScanner, so very long voices, e.g. read into a StringBuilder
+     * or a CharBuffer, can be parsed without splitting them into a string per note.
      *
      * @param voiceString Voice string to parse
      * @return The created object
      */
-    public static Voice parseVoiceString(String voiceString) {
-        String[] notes = voiceString.split(",");
-        BasicNote[] parsed = new Note[notes.length];
-
-        for (int i = 0; i < notes.length; i++) {
-            if (notes[i].charAt(0) == 'R') {
-                parsed[i] = Rest.parseRestString(notes[i]);
-            } else {
-                parsed[i] = new Note(notes[i]);
-            }
+    public static Voice parseVoiceString(CharSequence voiceString) {
+        NoteScanner scanner = new NoteScanner(voiceString);
+        List<BasicNote> parsed = new ArrayList<>(scanner.countRemaining());
+
+        while (scanner.hasNext()) {
+            parsed.add(scanner.next());
         }
 
         return new Voice(parsed);
@@ -70,60 +84,117 @@ public class Voice {
     public String toString() {
         StringBuilder sb = new StringBuilder();
 
-        for (BasicNote b : melody) {
-            sb.append(Note.compactFormatBasicNote(b));
+        try {
+            writeTo(sb);
+        } catch (IOException e) {
+            // StringBuilder does not throw
+            throw new UncheckedIOException(e);
         }
 
-        return trimEnd("Voice " + index + ": " + sb.toString(), '.');
+        return sb.toString();
     }
 
     /**
-     * Utility used to remove characters from the end of a string.
+     * Write the same text as toString() one note at a time, without building it in memory first.
+     * Each note is written in the compact format of Note.compactFormatBasicNote().
      *
-     * @param toTrim String to trim
-     * @param ch     Character to remove
-     * @return The string with all instances of ch removed from the tail.
+     * @param out Where to write the voice, e.g. a Writer.
+     * @throws IOException If out cannot be written to.
      */
-    private static String trimEnd(String toTrim, char ch) {
-        int goodLength = toTrim.length();
-
-        for (int i = toTrim.length() - 1; i > 0; i--) {
-            char c = toTrim.charAt(i);
-
-            if (c == ch) {
-                // knock off a character
-                goodLength--;
-            } else {
-                // trimmed as much as possible
-                break;
-            }
+    public void writeTo(Appendable out) throws IOException {
+        writeTo(out, index, melody);
+    }
+
+    static void writeTo(Appendable out, int index, Iterable<BasicNote> notes) throws IOException {
+        writeHeader(out, index);
+
+        int padding = 0;
+
+        for (BasicNote b : notes) {
+            writePadding(out, padding);
+            padding = Note.COMPACT_WIDTH - b.writeTo(out);
         }
+    }
 
-        return toTrim.substring(0, goodLength);
+    /**
+     * Write the start of a voice's text, before its first note.
+     */
+    static void writeHeader(Appendable out, int index) throws IOException {
+        out.append("Voice ").append(Integer.toString(index)).append(": ");
     }
 
     /**
-     * Sum all note values in this Voice, producing an array of largest-value Durations.
+     * Write the dots padding the previous note out to Note.COMPACT_WIDTH. Padding is only written once another note
+     * follows it, so the voice never ends in dots.
      *
-     * @return An array of Durations, in the largest possible units.
+     * @param padding Number of dots, at most zero if the note filled its width.
      */
-    public Duration[] getTotalDuration() {
-        return Duration.generateMultipleDurations(getTotalDurationValue());
+    static void writePadding(Appendable out, int padding) throws IOException {
+        for (; padding > 0; padding--) {
+            out.append('.');
+        }
+    }
+
+    @Override
+    public long getTotalTicks() {
+        indexOnsets();
+
+        return onsets[indexed];
+    }
+
+    @Override
+    public long getOnset(int index) {
+        indexOnsets();
+        Objects.checkIndex(index, indexed);
+
+        return onsets[index];
     }
 
     /**
-     * Sum all note values in this Voice.
+     * Find the notes sounding at any time from startTick up to, but not including, endTick.
      *
-     * @return Their total duration, represented in beats.
+     * @param startTick Start of the span in 1/192 whole note ticks, inclusive.
+     * @param endTick   End of the span, exclusive.
+     * @return A view of the notes in the span, in order.
      */
-    public double getTotalDurationValue() {
-        double sum = 0;
+    public List<BasicNote> getNotesBetween(long startTick, long endTick) {
+        int[] range = getNoteIndexRange(startTick, endTick);
 
-        for (BasicNote b : melody) {
-            sum += b.getDuration().getDoubleValue();
+        return melody.subList(range[0], range[1]);
+    }
+
+    /**
+     * Drop the onset index, so it is rebuilt from the notes on the next query.
+     * Needed after changing melody directly, or the duration of a note in this voice.
+     */
+    public void invalidateOnsets() {
+        indexed = 0;
+    }
+
+    /**
+     * Extend the onset index to cover every note.
+     */
+    private void indexOnsets() {
+        int size = melody.size();
+
+        if (indexed > size) {
+            // notes were removed from the list
+            indexed = 0;
         }
 
-        return sum;
+        if (indexed == size) {
+            return;
+        }
+
+        if (onsets.length < size + 1) {
+            onsets = Arrays.copyOf(onsets, Math.max(size + 1, onsets.length * 2));
+        }
+
+        for (int i = indexed; i < size; i++) {
+            onsets[i + 1] = onsets[i] + melody.get(i).getDuration().getTicks();
+        }
+
+        indexed = size;
     }
 
     /**
@@ -147,6 +218,7 @@ public class Voice {
      */
     public Voice addNote(Note n, int index) {
         melody.set(index, n);
+        indexed = Math.min(indexed, index);
 
         return this;
     }
@@ -168,6 +240,7 @@ public class Voice {
      *
      * @return The number of notes.
      */
+    @Override
     public int size() {
         return melody.size();
     }
@@ -178,6 +251,7 @@ public class Voice {
      *
      * @return The index of this Voice
      */
+    @Override
     public int getIndex() {
         return index;
     }
@@ -188,6 +262,7 @@ public class Voice {
      * @param index The index to retrieve from
      * @return The present note.
      */
+    @Override
     public BasicNote getNote(int index) {
         return melody.get(index);
     }
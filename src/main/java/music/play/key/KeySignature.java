@@ -201,7 +201,7 @@ public class KeySignature {
      * @return noteIn Note with an octave of 4, and a duration of quarter note.
      */
     private Note normalizePitch(Note noteIn) {
-        return new Note(noteIn.basePitch, noteIn.accidental, Octave.FOUR, new Duration(Duration.DurationValue.QUARTER, false));
+        return new Note(noteIn.basePitch, noteIn.accidental, Octave.FOUR, Duration.of(Duration.DurationValue.QUARTER, false));
     }
 
     @Override
@@ -219,6 +219,17 @@ public class KeySignature {
         return keySignature.hashCode();
     }
 
+    /**
+     * @return The number of sharps in this key signature, or minus the number of flats.
+     */
+    public int getFifths() {
+        if (key instanceof MajorSharpKeys || key instanceof MinorSharpKeys) {
+            return keySignature.size();
+        } else {
+            return -keySignature.size();
+        }
+    }
+
     public Key getKey() {
         return key;
     }
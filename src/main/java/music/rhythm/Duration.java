@@ -1,17 +1,16 @@
 package music.rhythm;
 
-import com.google.common.collect.HashBiMap;
-
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.IllegalFormatException;
-import java.util.stream.Collectors;
 
 /**
  * Class representing an amount of time a note should sound for.
  * Represents time as note values found in most music.
  * Currently supports common non-triplet note values, up to sixty-fourth notes.
  * This class does support durations with value 0.
+ * <p>
+ * Durations are immutable. Every legal Duration has one shared instance, see Duration.of().
  */
 public class Duration implements Comparable<Duration> {
     public enum DurationValue {
@@ -26,182 +25,106 @@ public class Duration implements Comparable<Duration> {
     }
 
     /**
-     * Duration values are represented internally as a fraction akin to the time signature of the measure.
-     * E.g. a dotted half note in 3/4 time would be represented as the Fraction 3/4.
+     * Duration values are represented internally as a whole number of ticks, each 1/192 of a whole note.
+     * Every legal Duration, down to a sixty-fourth note, and triplets of them, lasts a whole number of ticks,
+     * so sums and comparisons of Durations are exact.
      * <p>
-     * An eighth note is represented by the Fraction 1/8 in both 4/4 and 6/8 time, as another example.
+     * These ticks do not depend on the resolution of any MIDI file.
      */
-    private static class Fraction {
-        public int numerator;
-        public int denominator;
-
-        public Fraction(int numerator, int denominator) {
-            this.numerator = numerator;
-            this.denominator = denominator;
-        }
+    public static final int TICKS_PER_WHOLE_NOTE = 192;
 
-        /**
-         * Constructs a Fraction out of an irrational number.
-         * Tries its best to round to the closest Fraction
-         *
-         * @param decimal The decimal to convert.
-         */
-        public Fraction(double decimal) {
-            Fraction temp = doubleToFraction(decimal);
-
-            this.numerator = temp.numerator;
-            this.denominator = temp.denominator;
-        }
+    // Allow mapping of custom strings to enum DurationValue enum
+    public static final ArrayList<String> strRepresentations = new ArrayList<>();
 
-        /**
-         * Adds this Fraction to the given Fractions. Uses Euclidean algorithm. Does not modify the current object.
-         *
-         * @param f Fraction to add to current object
-         * @return The resulting new Fraction
-         */
-        public Fraction add(Fraction f) {
-            return simplify(new Fraction(numerator * f.denominator + denominator * f.numerator,
-                    denominator * f.denominator));
-        }
+    // strRepresentations, one character per note value
+    private static final String DURATION_CODES = "WHQESTXN";
+    public static final ArrayList<String> enumNames = new ArrayList<>();
 
-        /**
-         * Divides this Fraction by the given Fraction. Does not modify the current object.
-         *
-         * @param f Fraction to divide by
-         * @return The resulting new Fraction
-         */
-        public Fraction divide(Fraction f) {
-            return simplify(new Fraction(numerator * f.denominator, denominator * f.numerator));
-        }
+    private final DurationValue value;
+    private final boolean dot; // kept for printing only
+    private final int ticks;
+    private final int index; // see canonicalIndex()
 
-        /**
-         * Multiplies this Fraction by the given Fraction. Does not modify the current object.
-         *
-         * @param f Fraction to multiply by
-         * @return The resulting new Fraction
-         */
-        public Fraction multiply(Fraction f) {
-            return simplify(new Fraction(numerator * f.numerator, denominator * f.denominator));
-        }
+    /**
+     * Length of each DurationValue, without a dot, in ticks.
+     */
+    private static final int[] valueTicks = {192, 96, 48, 24, 12, 6, 3, 0};
 
-        /**
-         * Get the numeric value of this Fraction
-         */
-        public double getDoubleValue() {
-            return (double) numerator / (double) denominator;
-        }
+    /**
+     * The canonical instance of every legal Duration, indexed by canonicalIndex().
+     */
+    private static final Duration[] canonical = new Duration[DurationValue.values().length * 2];
 
-        /**
-         * Computes the greatest common denominator of two numbers
-         *
-         * @param x First number
-         * @param y Second number
-         * @return The GCD
-         */
-        private int gcd(int x, int y) {
-            if (y == 0) {
-                return x;
-            }
+    /**
+     * The canonical instance lasting each number of ticks, or null if no single Duration lasts that long.
+     * Undotted Durations win over dotted ones of the same length, i.e. zero ticks is a NULL Duration.
+     */
+    private static final Duration[] byTicks = new Duration[TICKS_PER_WHOLE_NOTE * 3 / 2 + 1];
 
-            return gcd(y, x % y);
-        }
+    /**
+     * The longest Durations which fit in each length shorter than a whole note, longest first.
+     * Indexed by length in sixty-fourth notes.
+     */
+    private static final Duration[][] remainders = new Duration[TICKS_PER_WHOLE_NOTE / 3][];
 
-        /**
-         * Simplifies the given Fraction, transforming it into lowest form.
-         *
-         * @param f The Fraction to modify.
-         * @return the modified fraction for convenience.
-         */
-        private Fraction simplify(Fraction f) {
-            int gcd = gcd(f.numerator, f.denominator);
+    /**
+     * getDurationRatio() of every pair of Durations, indexed by canonicalIndex() of the first times the number of
+     * canonical Durations, plus canonicalIndex() of the second.
+     */
+    private static final double[] ratios = new double[canonical.length * canonical.length];
 
-            f.numerator /= gcd;
-            f.denominator /= gcd;
+    static {
+        strRepresentations.addAll(Arrays.asList("W", "H", "Q", "E", "S", "T", "X", "N"));
+        enumNames.addAll(Arrays.asList("WHOLE", "HALF", "QUARTER", "EIGHTH", "SIXTEENTH",
+                "THIRTY_SECONDTH", "SIXTY_FOURTH", "NULL"));
 
-            return f;
+        for (DurationValue v : DurationValue.values()) {
+            Duration d = new Duration(v, false);
+            canonical[canonicalIndex(v, false)] = d;
+            byTicks[d.ticks] = d;
         }
 
-        /**
-         * Gets the fraction representation of a double.
-         * Returns in simplest form.
-         *
-         * @param d The double to evaluate.
-         * @return A fraction best matching this double.
-         */
-        private Fraction doubleToFraction(double d) {
-            if (d == 0) {
-                return new Fraction(0, 1);
-            }
+        for (DurationValue v : DurationValue.values()) {
+            if (v != DurationValue.SIXTY_FOURTH) {
+                Duration d = new Duration(v, true);
+                canonical[canonicalIndex(v, true)] = d;
 
-            // ktm5124 on StackOverflow
-            String s = String.valueOf(d);
-            int digitsDec = s.length() - 1 - s.indexOf('.');
-
-            int denom = 1;
-            for (int i = 0; i < digitsDec; i++) {
-                d *= 10;
-                denom *= 10;
+                if (byTicks[d.ticks] == null) {
+                    byTicks[d.ticks] = d;
+                }
             }
-            int num = (int) Math.round(d);
-
-            return simplify(new Fraction(num, denom));
         }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-
-            Fraction fraction = (Fraction) o;
-
-            return numerator == fraction.numerator && denominator == fraction.denominator;
-
-        }
-
-        @Override
-        public int hashCode() {
-            int result = numerator;
-            result = 31 * result + denominator;
-            return result;
-        }
-
-        @Override
-        public String toString() {
-            return numerator + "/" + denominator;
+        for (int i = 0; i < canonical.length; i++) {
+            for (int j = 0; j < canonical.length; j++) {
+                if (canonical[i] != null && canonical[j] != null) {
+                    ratios[i * canonical.length + j] = canonical[i].ticks / (double) canonical[j].ticks;
+                }
+            }
         }
-    }
-
-    // Allow mapping of custom strings to enum DurationValue enum
-    public static final ArrayList<String> strRepresentations = new ArrayList<>();
-    public static final ArrayList<String> enumNames = new ArrayList<>();
 
-    private DurationValue value;
-    private boolean dot; // kept for printing only
-    private Fraction durationValue;
+        remainders[0] = new Duration[0];
 
-    private static final HashBiMap<DurationValue, Fraction> durationValues = HashBiMap.create();
+        for (int i = 1; i < remainders.length; i++) {
+            int t = i * 3;
 
-    static {
-        strRepresentations.addAll(Arrays.asList("W", "H", "Q", "E", "S", "T", "X", "N"));
-        enumNames.addAll(Arrays.asList("WHOLE", "HALF", "QUARTER", "EIGHTH", "SIXTEENTH",
-                "THIRTY_SECONDTH", "SIXTY_FOURTH", "NULL"));
+            while (byTicks[t] == null) {
+                t--;
+            }
 
-        // Convert enum into numeric duration value
-        // Values are fractions of total beats in measure
-        durationValues.put(DurationValue.WHOLE, new Fraction(1, 1));
-        durationValues.put(DurationValue.HALF, new Fraction(1, 2));
-        durationValues.put(DurationValue.QUARTER, new Fraction(1, 4));
-        durationValues.put(DurationValue.EIGHTH, new Fraction(1, 8));
-        durationValues.put(DurationValue.SIXTEENTH, new Fraction(1, 16));
-        durationValues.put(DurationValue.THIRTY_SECONDTH, new Fraction(1, 32));
-        durationValues.put(DurationValue.SIXTY_FOURTH, new Fraction(1, 64));
+            // the longest Duration which fits, then whatever fits in what is left
+            Duration[] rest = remainders[i - t / 3];
+            Duration[] parts = new Duration[rest.length + 1];
+            parts[0] = byTicks[t];
+            System.arraycopy(rest, 0, parts, 1, rest.length);
 
-        // the zero duration is useful as an intermediate value
-        durationValues.put(DurationValue.NULL, new Fraction(0, 1));
+            remainders[i] = parts;
+        }
     }
 
     /**
      * Create a Duration object, consisting of a note value, and an optional dot.
+     * Durations are immutable, so prefer the shared instance returned by Duration.of().
      *
      * @param duration Amount of time the Duration should last.
      * @param dot      If true, add a dot to this Duration, adding half its value to its total.
@@ -212,73 +135,115 @@ public class Duration implements Comparable<Duration> {
         }
         this.value = duration;
         this.dot = dot;
-        durationValue = durationValues.get(duration);
+        this.index = canonicalIndex(duration, dot);
 
         // Add half the note's value again
         if (dot) {
-            durationValue = durationValue.multiply(new Fraction(3, 2));
+            ticks = valueTicks[duration.ordinal()] * 3 / 2;
+        } else {
+            ticks = valueTicks[duration.ordinal()];
         }
     }
 
     /**
      * Parses a duration string to create a Duration object.
      * The string takes this form: [Duration][(Optional) d]
+     * Durations are immutable, so prefer the shared instance returned by Duration.parseDurationString().
      *
      * @param durationString Duration string
      */
     public Duration(String durationString) {
-        Duration temp = Duration.parseDurationString(durationString);
-
-        this.value = temp.value;
-        this.dot = temp.dot;
-        this.durationValue = temp.durationValue;
+        this(Duration.parseDurationString(durationString));
     }
 
     /**
      * Create a new Duration with the given decimal value.
      * This will fail if the decimal value is not a clean fraction
      * able to be made into a duration.
+     * Durations are immutable, so prefer the shared instance returned by Duration.of().
      *
      * @param durationDecimal The duration decimal
      */
     public Duration(double durationDecimal) {
-        Duration temp = fractionToDuration(new Fraction(durationDecimal));
+        this(Duration.of(durationDecimal));
+    }
 
-        this.value = temp.value;
-        this.dot = temp.dot;
-        this.durationValue = temp.durationValue;
+    private Duration(Duration d) {
+        this.value = d.value;
+        this.dot = d.dot;
+        this.ticks = d.ticks;
+        this.index = d.index;
     }
 
     /**
-     * Converts a fraction representing a Duration into that Duration object.
+     * Get the shared instance of a Duration. There is one instance per note value and dot, so Durations returned
+     * from here, and from every other method of this class, can be compared with ==.
      *
-     * @param f Fraction to convert
-     * @return The Duration object represented by that Fraction, with note and dot.
+     * @param value Amount of time the Duration should last.
+     * @param dot   If true, add a dot to this Duration, adding half its value to its total.
+     * @return The Duration.
      */
-    private static Duration fractionToDuration(Fraction f) {
-        if (durationValues.containsValue(f)) {
-            // Fraction represents a simple note, so return it
-            return new Duration(durationValues.inverse().get(f), false);
-        } else {
-            // Duration has a dot, so simplify it
-            DurationValue baseNote = durationValues.inverse().get(new Fraction(1, f.denominator / 2));
+    public static Duration of(DurationValue value, boolean dot) {
+        Duration d = canonical[canonicalIndex(value, dot)];
+
+        if (d == null) {
+            throw new IllegalArgumentException("Duration resolution too great (cannot exceed sixty-fourth note).");
+        }
+
+        return d;
+    }
+
+    /**
+     * Get the shared instance of the Duration with the given decimal value.
+     * This will fail if the decimal value is not a clean fraction able to be made into a duration.
+     *
+     * @param durationDecimal The decimal fraction of a whole note (quarter note = 0.25, half 0.5, etc).
+     * @return The Duration.
+     */
+    public static Duration of(double durationDecimal) {
+        return ofTicks(decimalToTicks(durationDecimal * TICKS_PER_WHOLE_NOTE));
+    }
+
+    /**
+     * Get the shared instance of the Duration lasting a number of ticks.
+     *
+     * @param ticks Length in 1/192 whole note ticks.
+     * @return The Duration.
+     * @throws IllegalArgumentException If no single Duration lasts that long.
+     */
+    public static Duration ofTicks(long ticks) {
+        Duration d = ticks >= 0 && ticks < byTicks.length ? byTicks[(int) ticks] : null;
+
+        if (d == null) {
+            throw new IllegalArgumentException("No single Duration lasts " + ticks + "/" + TICKS_PER_WHOLE_NOTE
+                    + " of a whole note.");
+        }
+
+        return d;
+    }
+
+    private static int canonicalIndex(DurationValue value, boolean dot) {
+        return value.ordinal() * 2 + (dot ? 1 : 0);
+    }
+
+    /**
+     * Converts a length in ticks computed with doubles back to whole ticks.
+     *
+     * @throws IllegalArgumentException If the length is not close to a whole number of ticks.
+     */
+    private static long decimalToTicks(double ticks) {
+        long rounded = Math.round(ticks);
 
-            // Duration will be the next largest note, plus a dot
-            // E.g. 3/4 -> dotted half (1/2 + dot)
-            // 3/8 -> dotted quarter (1/4 + dot)
-            return new Duration(baseNote, true);
+        if (Math.abs(ticks - rounded) > 1e-6) {
+            throw new IllegalArgumentException("No Duration lasts " + ticks / TICKS_PER_WHOLE_NOTE + " of a whole note.");
         }
+
+        return rounded;
     }
 
     @Override
     public int compareTo(Duration o) {
-        if (this.getDoubleValue() < o.getDoubleValue()) {
-            return -1;
-        } else if (this.getDoubleValue() > o.getDoubleValue()) {
-            return 1;
-        } else {
-            return 0;
-        }
+        return Integer.compare(ticks, o.ticks);
     }
 
     /**
@@ -297,7 +262,7 @@ public class Duration implements Comparable<Duration> {
                 throw new IllegalArgumentException("Note string format incorrect (invalid duration string '" + durationString + "').");
             }
 
-            return new Duration(DurationValue.valueOf(Duration.enumNames.get(ordinal)), false);
+            return of(DurationValue.values()[ordinal], false);
         } else if (durationString.length() == 2 && durationString.charAt(1) == 'd') {
             ordinal = Duration.strRepresentations.indexOf("" + durationString.charAt(0));
 
@@ -305,7 +270,7 @@ public class Duration implements Comparable<Duration> {
                 throw new IllegalArgumentException("Note string format incorrect (invalid duration string '" + durationString + "').");
             }
 
-            return new Duration(DurationValue.valueOf(Duration.enumNames.get(ordinal)), true);
+            return of(DurationValue.values()[ordinal], true);
         } else {
             throw new IllegalArgumentException("Note string format incorrect (invalid duration string '" + durationString + "').");
         }
@@ -318,8 +283,7 @@ public class Duration implements Comparable<Duration> {
      * @return A new Duration[] representing the combined values of all Durations passed in.
      */
     public static Duration[] addDurations(Duration... in) {
-        Fraction total = in[0].durationValue;
-        ArrayList<Duration> toReturn = new ArrayList<>();
+        long total = in[0].ticks;
 
         for (int i = 1; i < in.length; i++) {
             if (in[i] == null) {
@@ -327,50 +291,90 @@ public class Duration implements Comparable<Duration> {
                 continue;
             }
 
-            total = total.add(in[i].durationValue);
+            total += in[i].ticks;
         }
 
-        double temp = total.getDoubleValue();
-        ArrayList<Double> parts = new ArrayList<>();
+        return generateMultipleDurationsFromTicks(total);
+    }
 
-        if (temp > 1.0) {
-            while (temp != 0) {
-                double t2 = temp > 1.0 ? 1.0 : temp;
-                parts.add(t2);
-                temp -= t2;
-            }
-        } else {
-            parts.add(temp);
+    /**
+     * Generate Durations (maximum size whole note) out of the given double value.
+     * Double value must divide nicely into durations.
+     * @param value Value to break into Durations
+     * @return The generated Durations
+     */
+    public static Duration[] generateMultipleDurations(double value) {
+        return generateMultipleDurationsFromTicks(decimalToTicks(value * TICKS_PER_WHOLE_NOTE));
+    }
+
+    /**
+     * Generate Durations (maximum size whole note) lasting the given number of ticks.
+     * Whole notes come first, then the longest Durations which fit in the remainder.
+     * A length of zero gives a single NULL Duration.
+     * @param ticks Length in 1/192 whole note ticks to break into Durations
+     * @return The generated Durations
+     * @throws IllegalArgumentException If the length is not a whole number of sixty-fourth notes.
+     */
+    public static Duration[] generateMultipleDurationsFromTicks(long ticks) {
+        if (ticks == 0) {
+            return new Duration[]{byTicks[0]};
         }
 
+        Duration[] parts = new Duration[decomposedLength(ticks)];
+        decompose(ticks, parts, 0);
 
-        toReturn.addAll(parts.stream().map(Duration::new).collect(Collectors.toList()));
+        return parts;
+    }
 
-        Duration[] d = new Duration[toReturn.size()];
+    /**
+     * Number of Durations decompose() writes for a length.
+     *
+     * @param ticks Length in 1/192 whole note ticks.
+     * @throws IllegalArgumentException If the length is not a whole number of sixty-fourth notes.
+     */
+    public static int decomposedLength(long ticks) {
+        checkDecomposable(ticks);
 
-        return toReturn.toArray(d);
+        return Math.toIntExact(ticks / TICKS_PER_WHOLE_NOTE) + remainders[remainderIndex(ticks)].length;
     }
 
     /**
-     * Generate Durations (maximum size whole note) out of the given double value.
-     * Double value must divide nicely into durations.
-     * @param value Value to break into Durations
-     * @return The generated Durations
+     * Writes the Durations which, tied together, last the given number of ticks: whole notes first, then the
+     * longest Durations which fit in the remainder. Nothing is allocated, so this suits filling gaps in a loop.
+     *
+     * @param ticks  Length in 1/192 whole note ticks. A length of zero writes nothing.
+     * @param buffer Array to write the Durations to, with room for decomposedLength(ticks) of them.
+     * @param offset Index in buffer of the first Duration.
+     * @return The number of Durations written.
+     * @throws IllegalArgumentException If the length is not a whole number of sixty-fourth notes, or the buffer
+     *                                  is too small.
      */
-    public static Duration[] generateMultipleDurations(double value) {
-        ArrayList<Duration> parts = new ArrayList<>();
+    public static int decompose(long ticks, Duration[] buffer, int offset) {
+        int count = decomposedLength(ticks);
 
-        if (value > 1.0) {
-            while (value != 0) {
-                double t2 = value > 1.0 ? 1.0 : value;
-                parts.add(new Duration(t2));
-                value -= t2;
-            }
-        } else {
-            parts.add(new Duration(value));
+        if (buffer.length - offset < count) {
+            throw new IllegalArgumentException("Buffer has room for " + (buffer.length - offset) + " Durations, "
+                    + count + " needed.");
+        }
+
+        Duration[] remainder = remainders[remainderIndex(ticks)];
+        int wholes = count - remainder.length;
+
+        Arrays.fill(buffer, offset, offset + wholes, byTicks[TICKS_PER_WHOLE_NOTE]);
+        System.arraycopy(remainder, 0, buffer, offset + wholes, remainder.length);
+
+        return count;
+    }
+
+    private static void checkDecomposable(long ticks) {
+        if (ticks < 0 || ticks % valueTicks[DurationValue.SIXTY_FOURTH.ordinal()] != 0) {
+            throw new IllegalArgumentException("No Durations last " + ticks + "/" + TICKS_PER_WHOLE_NOTE
+                    + " of a whole note.");
         }
+    }
 
-        return parts.toArray(new Duration[parts.size()]);
+    private static int remainderIndex(long ticks) {
+        return (int) (ticks % TICKS_PER_WHOLE_NOTE) / valueTicks[DurationValue.SIXTY_FOURTH.ordinal()];
     }
 
     /**
@@ -383,8 +387,8 @@ public class Duration implements Comparable<Duration> {
      * @return The ratio of the current object's value to the argument.
      */
     public double getDurationRatio(Duration d) {
-        return durationValue.multiply(
-                new Fraction(d.durationValue.denominator, d.durationValue.numerator)).getDoubleValue();
+        // looked up, since timing playback asks for this once per note
+        return ratios[index * canonical.length + d.index];
     }
 
     /**
@@ -396,21 +400,27 @@ public class Duration implements Comparable<Duration> {
      * @return The Duration best representing this ratio.
      */
     public static Duration getDurationByRatio(Duration base, double ratio) {
-        Fraction ratioFraction = new Fraction(ratio);
-        Fraction newDurationRatio = ratioFraction.multiply(base.durationValue);
-
-        return fractionToDuration(newDurationRatio);
+        return ofTicks(decimalToTicks(ratio * base.ticks));
     }
 
-    public static double sumDurationArray(Duration... d) {
-        double sum = 0;
+    /**
+     * Sums the lengths of Durations exactly.
+     *
+     * @return The total length, in 1/192 whole note ticks.
+     */
+    public static long sumTicks(Duration... d) {
+        long sum = 0;
         for (Duration x: d) {
-            sum += x.getDoubleValue();
+            sum += x.ticks;
         }
 
         return sum;
     }
 
+    public static double sumDurationArray(Duration... d) {
+        return sumTicks(d) / (double) TICKS_PER_WHOLE_NOTE;
+    }
+
     /**
      * Subdivide the given duration, returning the next shortest Duration, or null if resolution is not great enough.
      * E.g. eighth -> quarter
@@ -421,7 +431,11 @@ public class Duration implements Comparable<Duration> {
             return null;
         }
 
-        return fractionToDuration(this.durationValue.multiply(new Fraction(1, 2)));
+        if (ticks % 2 != 0) {
+            throw new IllegalArgumentException("Duration resolution too great (cannot exceed sixty-fourth note).");
+        }
+
+        return ofTicks(ticks / 2);
     }
 
     /**
@@ -432,8 +446,64 @@ public class Duration implements Comparable<Duration> {
      * @return The duration code for this Duration
      */
     public String getDurationCode() {
-        int enumName = Duration.enumNames.indexOf(value.name());
-        return strRepresentations.get(enumName) + (dot ? "d" : "");
+        return strRepresentations.get(value.ordinal()) + (dot ? "d" : "");
+    }
+
+    /**
+     * Write the same text as getDurationCode(), without building a String.
+     *
+     * @param out Where to write it.
+     * @return The number of characters written.
+     * @throws IOException If out cannot be written to.
+     */
+    public int writeCodeTo(Appendable out) throws IOException {
+        out.append(DURATION_CODES.charAt(value.ordinal()));
+
+        if (dot) {
+            out.append('d');
+            return 2;
+        }
+
+        return 1;
+    }
+
+    /**
+     * @return The note value of this Duration, without its dot.
+     */
+    public DurationValue getValue() {
+        return value;
+    }
+
+    /**
+     * @return True if this Duration is dotted.
+     */
+    public boolean isDotted() {
+        return dot;
+    }
+
+    /**
+     * Get a small number identifying this Duration's note value and dot, for packing into primitive encodings.
+     *
+     * @return A code from 0 to 15, see fromPackedCode().
+     */
+    public int getPackedCode() {
+        return index;
+    }
+
+    /**
+     * Get the shared instance of the Duration with the given code.
+     *
+     * @param code A code returned by getPackedCode().
+     * @return The Duration.
+     */
+    public static Duration fromPackedCode(int code) {
+        Duration d = code >= 0 && code < canonical.length ? canonical[code] : null;
+
+        if (d == null) {
+            throw new IllegalArgumentException("Invalid Duration code " + code + ".");
+        }
+
+        return d;
     }
 
     /**
@@ -443,7 +513,16 @@ public class Duration implements Comparable<Duration> {
      * @return The double representation of this duration.
      */
     public double getDoubleValue() {
-        return durationValue.getDoubleValue();
+        return ticks / (double) TICKS_PER_WHOLE_NOTE;
+    }
+
+    /**
+     * Get this Duration's exact length.
+     *
+     * @return The length in ticks, each 1/192 of a whole note.
+     */
+    public int getTicks() {
+        return ticks;
     }
 
     @Override
@@ -454,12 +533,12 @@ public class Duration implements Comparable<Duration> {
         Duration duration = (Duration) o;
 
         // value already has dot added in
-        return durationValue.equals(duration.durationValue);
+        return ticks == duration.ticks;
     }
 
     @Override
     public int hashCode() {
-        return durationValue.hashCode();
+        return ticks;
     }
 
     @Override
@@ -1,6 +1,9 @@
 package music.rhythm;
 
 import music.pitch.Note;
+
+import java.io.IOException;
+
 /**
  * Represents an amount of time with no pitch associated with it.
  *
@@ -44,4 +47,11 @@ public class Rest extends Note {
     public String toNoteString() {
         return "R:" + super.getDuration().getDurationCode();
     }
+
+    @Override
+    public int writeTo(Appendable out) throws IOException {
+        out.append("R:");
+
+        return 2 + super.getDuration().writeCodeTo(out);
+    }
 }
@@ -0,0 +1,78 @@
+package midi;
+
+import music.play.Staff;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author reedt
+ */
+public class MidiCorpusLoaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLoadDirectory() throws Exception {
+        Map<Path, Staff> loaded = new ConcurrentHashMap<>();
+
+        MidiCorpusLoader.Report report = new MidiCorpusLoader(3, MidiFileParser.ReadMode.MAPPED)
+                .load(Paths.get("bin/midifiles/test"), loaded::put);
+
+        assertEquals(8, report.files);
+        assertEquals(56, report.notes);
+        assertEquals(8, loaded.size());
+        assertTrue(report.failures.isEmpty());
+
+        // each staff matches a single file parse
+        File basic = new File("bin/midifiles/test/test_basicnotes.mid");
+        assertEquals(new MidiFileParser().loadAndParseFile(basic), loaded.get(basic.toPath()));
+    }
+
+    @Test
+    public void testFailureDoesNotAbortBatch() throws Exception {
+        Path root = folder.getRoot().toPath();
+        Files.copy(Paths.get("bin/midifiles/test/test_basicnotes.mid"), root.resolve("good.mid"));
+        Files.writeString(root.resolve("broken.mid"), "not a midi file");
+        Files.writeString(root.resolve("notes.txt"), "ignored");
+
+        MidiCorpusLoader.Report report = new MidiCorpusLoader(2, MidiFileParser.ReadMode.MAPPED)
+                .load(root, (p, s) -> { });
+
+        assertEquals(1, report.files);
+        assertEquals(2, report.notes);
+        assertEquals(1, report.failures.size());
+        assertTrue(report.failures.containsKey(root.resolve("broken.mid")));
+    }
+
+    @Test
+    public void testConsumerFailureIsOnlyAFailure() throws Exception {
+        Path root = folder.getRoot().toPath();
+        Files.copy(Paths.get("bin/midifiles/test/test_basicnotes.mid"), root.resolve("good.mid"));
+
+        MidiCorpusLoader.Report report = new MidiCorpusLoader(2, MidiFileParser.ReadMode.MAPPED)
+                .load(root, (p, s) -> {
+                    throw new IllegalStateException("consumer failed");
+                });
+
+        assertEquals(0, report.files);
+        assertEquals(0, report.notes);
+        assertTrue(report.failures.get(root.resolve("good.mid")) instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testRootIsNotAMidiFile() {
+        assertFalse(MidiCorpusLoader.isMidiFile(folder.getRoot().toPath().getRoot()));
+        assertFalse(MidiCorpusLoader.isMidiFile(Paths.get("bin/midifiles/test.txt")));
+        assertTrue(MidiCorpusLoader.isMidiFile(Paths.get("bin/midifiles/mz_331_1.mid")));
+    }
+}
@@ -0,0 +1,53 @@
+package midi;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Track;
+
+/**
+ * Parses synthetic sequences of increasing size and prints the time taken per note.
+ * Time per note should stay roughly flat as the note count grows by orders of magnitude.
+ * Not run as part of the test suite.
+ *
+ * @author reedt
+ */
+public class MidiFileParserBenchmark {
+    private static final int RESOLUTION = 384;
+
+    public static void main(String[] args) throws InvalidMidiDataException {
+        int[] sizes = {10_000, 100_000, 1_000_000};
+        // warm up
+        run(sizes[0]);
+
+        for (int size : sizes) {
+            long elapsed = run(size);
+            System.out.printf("%,d notes: %d ms, %.1f ns/note%n", size, elapsed / 1_000_000, (double) elapsed / size);
+        }
+    }
+
+    private static long run(int numNotes) throws InvalidMidiDataException {
+        Sequence sequence = buildSequence(numNotes);
+
+        long start = System.nanoTime();
+        new MidiFileParser().parseSequence(sequence);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Builds a two voice sequence: an eighth note melody cycling over two octaves,
+     * over a held quarter note bass which is re-struck before it is released.
+     */
+    private static Sequence buildSequence(int numNotes) throws InvalidMidiDataException {
+        Sequence sequence = new Sequence(Sequence.PPQ, RESOLUTION);
+        Track track = sequence.createTrack();
+        long tick = 0;
+
+        for (int i = 0; i < numNotes; i += 2) {
+            MidiFileParserTest.addNote(track, 0, 60 + (i % 24), tick, tick + RESOLUTION / 2);
+            MidiFileParserTest.addNote(track, 1, 48, tick, tick + RESOLUTION);
+            tick += RESOLUTION / 2;
+        }
+
+        return sequence;
+    }
+}
@@ -1,15 +1,27 @@
 package midi;
 
+import music.pitch.BasicNote;
+import music.play.Measure;
 import music.play.Staff;
 import music.play.Tempo;
 import music.play.TimeSignature;
 import music.play.Voice;
+import music.rhythm.Duration;
+import music.rhythm.Rest;
 import org.junit.Before;
 import org.junit.Test;
 
-import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.*;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -109,6 +121,290 @@ public class MidiFileParserTest {
         ));
     }
 
+    @Test
+    public void testOverlappingRestrike() throws InvalidMidiDataException {
+        // a key struck again before it is released is closed in the order it was struck
+        Sequence sequence = new Sequence(Sequence.PPQ, 384);
+        Track track = sequence.createTrack();
+        addNote(track, 0, 62, 0, 768);
+        addNote(track, 0, 62, 384, 1152);
+
+        assertEquals(new Staff(new Tempo(120), null, new TimeSignature("C"),
+                        new Voice[]{new Voice("D4:H", 0), new Voice("R:Q,D4:H", 1)}),
+                new MidiFileParser().parseSequence(sequence));
+    }
+
+    @Test
+    public void testSameKeyDifferentChannels() throws InvalidMidiDataException {
+        // releasing a key on one channel must not end the same key sounding on another
+        Sequence sequence = new Sequence(Sequence.PPQ, 384);
+        Track track = sequence.createTrack();
+        addNote(track, 0, 60, 0, 768);
+        addNote(track, 1, 60, 0, 384);
+
+        assertEquals(new Staff(new Tempo(120), null, new TimeSignature("C"),
+                        new Voice[]{new Voice("C4:Q", 0), new Voice("C4:H", 1)}),
+                new MidiFileParser().parseSequence(sequence));
+    }
+
+    @Test
+    public void testTracksMergedByTick() throws InvalidMidiDataException {
+        // a later track starting earlier in time must still be placed first
+        Sequence sequence = new Sequence(Sequence.PPQ, 384);
+        addNote(sequence.createTrack(), 0, 60, 384, 768);
+        addNote(sequence.createTrack(), 1, 64, 0, 384);
+
+        assertEquals(new Staff(new Tempo(120), null, new TimeSignature("C"),
+                        new Voice[]{new Voice("E4:Q,C4:Q", 0)}),
+                new MidiFileParser().parseSequence(sequence));
+    }
+
+    @Test
+    public void testTempoChanges() throws InvalidMidiDataException {
+        Sequence sequence = new Sequence(Sequence.PPQ, 384);
+        Track track = sequence.createTrack();
+        addNote(track, 0, 60, 0, 1536);
+        // 60 bpm from the second beat, then 120 bpm from the third
+        track.add(new MidiEvent(new MetaMessage(MidiFileParser.TEMPO_MARKING, new byte[]{0x0f, 0x42, 0x40}, 3), 384));
+        track.add(new MidiEvent(new MetaMessage(MidiFileParser.TEMPO_MARKING, new byte[]{0x07, (byte) 0xa1, 0x20}, 3), 768));
+
+        Staff parsed = new MidiFileParser().parseSequence(sequence);
+
+        assertEquals(new Tempo(120), parsed.tempo);
+        assertEquals(3, parsed.tempoMap.size());
+        assertEquals(60, parsed.tempoMap.getTempo(500).bpm);
+        assertEquals(500_000 + 1_000_000 + 500_000, parsed.tempoMap.tickToMicros(1152));
+        assertEquals(2500, MidiUtils.getDurationMiliseconds(new Duration("W"), 0, parsed.tempoMap));
+    }
+
+    @Test
+    public void testTraceWriter() throws InvalidMidiDataException, IOException {
+        StringWriter out = new StringWriter();
+
+        try (AsyncTraceWriter trace = new AsyncTraceWriter(out, 4)) {
+            new MidiFileParser(MidiFileParser.ReadMode.MAPPED, trace).loadAndParseFile(basic0);
+        }
+
+        String[] lines = out.toString().split("\n");
+        assertTrue(Arrays.asList(lines).contains("@0 Channel: 0 Note on, D4 key=62 velocity: 50"));
+        assertTrue(Arrays.asList(lines).contains("@0 Tempo marking: 110 bpm"));
+        assertEquals("@1536 End of track.", lines[lines.length - 1]);
+    }
+
+    @Test(timeout = 10_000)
+    public void testTraceWriterSurvivesMalformedEvent() throws IOException {
+        StringWriter out = new StringWriter();
+
+        try (AsyncTraceWriter trace = new AsyncTraceWriter(out, 2)) {
+            // a time signature with no data cannot be formatted
+            trace.metaMessage(0, MidiFileParser.TIME_SIGNATURE, new byte[0]);
+
+            // more events than the ring holds, which would wait forever if the writer had stopped
+            for (int i = 0; i < 16; i++) {
+                trace.noteOn(i, 0, 60, 64);
+            }
+        }
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(17, lines.length);
+        assertTrue(lines[0].startsWith("@0 Malformed event: "));
+        assertEquals("@15 Channel: 0 Note on, C4 key=60 velocity: 64", lines[16]);
+    }
+
+    @Test
+    public void testMappedReaderMatchesSequence() throws InvalidMidiDataException, IOException {
+        // the memory-mapped reader must parse every bundled file exactly like javax.sound.midi does
+        File[] files = {
+                new File("bin/midifiles/for_elise_by_beethoven.mid"),
+                new File("bin/midifiles/tchop35a.mid"),
+                new File("bin/midifiles/mz_331_1.mid"),
+                new File("bin/midifiles/bwv1004/vp2-1all.mid"),
+                new File("bin/midifiles/bwv1004/vp2-2cou.mid"),
+                new File("bin/midifiles/bwv1004/vp2-3sar.mid"),
+                new File("bin/midifiles/bwv1004/vp2-4gig.mid"),
+                new File("bin/midifiles/bwv1004/vp2-5cha.mid"),
+                new File("bin/midifiles/bwv1006/vp3-1pre.mid"),
+                new File("bin/midifiles/bwv1006/vp3-2lou.mid"),
+                new File("bin/midifiles/bwv1006/vp3-3gav.mid"),
+                new File("bin/midifiles/bwv1006/vp3-4min.mid"),
+                new File("bin/midifiles/bwv1006/vp3-5bou.mid"),
+                new File("bin/midifiles/bwv1006/vp3-6gig.mid"),
+                basic0, basic1, basic2, basic3, basic4, basic5, basic6, basic7
+        };
+
+        for (File f : files) {
+            Staff expected = new MidiFileParser(MidiFileParser.ReadMode.SEQUENCE).loadAndParseFile(f);
+            Staff mapped = new MidiFileParser(MidiFileParser.ReadMode.MAPPED).loadAndParseFile(f);
+
+            assertEquals(f.getPath(), expected, mapped);
+            assertEquals(f.getPath(), expected.toString(), mapped.toString());
+        }
+    }
+
+    @Test
+    public void testMappedReaderRejectsBadLengths() {
+        byte[] header = {'M', 'T', 'h', 'd', 0, 0, 0, 6, 0, 0, 0, 1, 1, (byte) 0xe0};
+        byte[][] files = {
+                // MThd length negative
+                {'M', 'T', 'h', 'd', (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xfe, 0, 0, 0, 1, 1, (byte) 0xe0},
+                // MTrk length negative
+                concat(header, new byte[]{'M', 'T', 'r', 'k', (byte) 0x80, 0, 0, 0, 0, (byte) 0xff, 0x2f, 0}),
+                // a meta event claiming 256 MB
+                concat(header, new byte[]{'M', 'T', 'r', 'k', 0, 0, 0, 8,
+                        0, (byte) 0xff, 0x01, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x7f, 0}),
+                // a SysEx event running past the end of the track
+                concat(header, new byte[]{'M', 'T', 'r', 'k', 0, 0, 0, 5, 0, (byte) 0xf0, 0x7f, 1, 2})
+        };
+
+        for (byte[] file : files) {
+            try {
+                MidiChunkReader.read(ByteBuffer.wrap(file), new MeasureStreamer(m -> { }, ParseEventListener.NONE));
+                fail("Read a file with a bad length.");
+            } catch (InvalidMidiDataException e) {
+                // expected
+            }
+        }
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] both = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, both, a.length, b.length);
+
+        return both;
+    }
+
+    @Test
+    public void testStreamMeasures() throws InterruptedException {
+        TimeSignature common = new TimeSignature("C");
+        List<Measure> expected = Arrays.asList(
+                new Measure(1, common, Arrays.asList(new Voice("D3:Q,D#3:Q,E3:Q,F3:Q", 0))),
+                new Measure(2, common, Arrays.asList(
+                        new Voice("F#3:Q,G3:Q,A3:Q,B3:Q", 0),
+                        new Voice("D3:Q,E3:Q,F#3:Q,G3:Q", 1))),
+                new Measure(3, common, Arrays.asList(
+                        new Voice("C4:Q", 0),
+                        new Voice("A3:Q", 1),
+                        new Voice("F#3:Q", 2),
+                        new Voice("D3:Q", 3))));
+
+        for (MidiFileParser.ReadMode mode : MidiFileParser.ReadMode.values()) {
+            assertEquals(expected, collectMeasures(new MidiFileParser(mode).streamMeasures(basic7)));
+        }
+    }
+
+    @Test
+    public void testStreamedVoicesMatchParse() throws Exception {
+        // a chord whose top note lasts no time still spreads over a voice per note
+        Sequence sequence = new Sequence(Sequence.PPQ, 384);
+        Track track = sequence.createTrack();
+        addNote(track, 0, 64, 0, 0);
+        addNote(track, 0, 60, 0, 384);
+        addNote(track, 0, 62, 384, 768);
+
+        File chord = File.createTempFile("zero_length_chord", ".mid");
+        chord.deleteOnExit();
+        MidiSystem.write(sequence, 0, chord);
+
+        File[] files = {
+                chord,
+                new File("bin/midifiles/test/test_chordrests.mid"),
+                new File("bin/midifiles/test/test_multiplevoices.mid"),
+                new File("bin/midifiles/for_elise_by_beethoven.mid"),
+                new File("bin/midifiles/mz_331_1.mid"),
+                basic7
+        };
+
+        for (File f : files) {
+            Staff parsed = new MidiFileParser().loadAndParseFile(f);
+            List<List<BasicNote>> streamed = new ArrayList<>();
+
+            for (Measure m : collectMeasures(new MidiFileParser().streamMeasures(f))) {
+                for (Voice v : m.voices) {
+                    while (streamed.size() <= v.getIndex()) {
+                        streamed.add(new ArrayList<>());
+                    }
+
+                    streamed.get(v.getIndex()).addAll(notesOnly(v.melody));
+                }
+            }
+
+            // rests are split at bar lines when streamed, so only the notes are compared
+            assertEquals(f.getPath(), parsed.voices.size(), streamed.size());
+
+            for (Voice v : parsed.voices) {
+                assertEquals(f.getPath(), notesOnly(v.melody), streamed.get(v.getIndex()));
+            }
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void testStreamIgnoresEmptyTimeSignature() throws Exception {
+        List<Measure> measures = new ArrayList<>();
+        MeasureStreamer streamer = new MeasureStreamer(measures::add, ParseEventListener.NONE);
+
+        streamer.header(Sequence.PPQ, 480);
+        streamer.metaMessage(0, MidiFileParser.TIME_SIGNATURE, new byte[]{0, 2, 24, 8});
+        streamer.channelMessage(0, ShortMessage.NOTE_ON, 0, 60, 64);
+        streamer.channelMessage(480, ShortMessage.NOTE_OFF, 0, 60, 0);
+        streamer.finish();
+
+        assertEquals(Arrays.asList(new Measure(1, new TimeSignature("C"), Arrays.asList(new Voice("C4:Q", 0)))),
+                measures);
+    }
+
+    private static List<BasicNote> notesOnly(List<BasicNote> melody) {
+        List<BasicNote> notes = new ArrayList<>();
+
+        for (BasicNote b : melody) {
+            if (!(b instanceof Rest)) {
+                notes.add(b);
+            }
+        }
+
+        return notes;
+    }
+
+    /**
+     * Test helper. Subscribes to a publisher and waits for all of its measures.
+     */
+    private List<Measure> collectMeasures(Flow.Publisher<Measure> publisher) throws InterruptedException {
+        List<Measure> measures = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(Measure item) {
+                measures.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                fail(throwable.toString());
+            }
+
+            @Override
+            public void onComplete() {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return measures;
+    }
+
+    /**
+     * Test helper. Adds a NOTE_ON and matching NOTE_OFF to the given track.
+     */
+    static void addNote(Track track, int channel, int key, long start, long end) throws InvalidMidiDataException {
+        track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, channel, key, 64), start));
+        track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, channel, key, 0), end));
+    }
+
     /**
      * Test helper.
      *
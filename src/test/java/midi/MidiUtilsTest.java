@@ -1,7 +1,13 @@
 package midi;
 
+import music.pitch.BasicNote;
+import music.pitch.Chord;
 import music.pitch.Note;
 import music.play.Tempo;
+import music.play.Voice;
+import music.play.key.KeySignature;
+import music.play.key.MajorFlatKeys;
+import music.play.key.MajorSharpKeys;
 import music.rhythm.Duration;
 import org.junit.Test;
 import util.NoteBank;
@@ -17,7 +23,7 @@ public class MidiUtilsTest {
         assertEquals(60, MidiUtils.getMidiNote(NoteBank.c4));
         assertEquals(61, MidiUtils.getMidiNote(NoteBank.cs4));
         assertEquals(84, MidiUtils.getMidiNote(new Note("B#5")));
-        assertEquals(24, MidiUtils.getMidiNote(new Note("Cb4")));
+        assertEquals(59, MidiUtils.getMidiNote(new Note("Cb4")));
 
         assertEquals(66, MidiUtils.getMidiNote(new Note("Gb4")));
     }
@@ -29,6 +35,35 @@ public class MidiUtilsTest {
         assertEquals(NoteBank.gs, MidiUtils.getNoteFromMidi(68));
     }
 
+    @Test
+    public void testKeySignatureSpelling() {
+        KeySignature fMajor = MajorFlatKeys.F.getKeySignature();
+
+        assertEquals(-1, fMajor.getFifths());
+        assertEquals("Bb4:Q", MidiUtils.getNoteFromMidi(70, fMajor).toNoteString());
+        assertEquals("A#4:Q", MidiUtils.getNoteFromMidi(70, MajorSharpKeys.E.getKeySignature()).toNoteString());
+        assertEquals("A#4:Q", MidiUtils.getNoteFromMidi(70, null).toNoteString());
+    }
+
+    @Test
+    public void testBulkConversion() {
+        Voice v = new Voice("Bb4:Q,R:H,C5:E,F4:Q");
+        int[] keys = MidiUtils.getMidiNotes(v);
+
+        assertArrayEquals(new int[]{70, MidiUtils.REST, 72, 65}, keys);
+
+        Note[] notes = MidiUtils.getNotesFromMidi(keys, MajorFlatKeys.F.getKeySignature());
+
+        assertEquals("Bb4:Q", notes[0].toNoteString());
+        assertEquals("R:Q", notes[1].toNoteString());
+        assertEquals("C5:Q", notes[2].toNoteString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBulkConversionChord() {
+        MidiUtils.getMidiNotes(new Voice(new BasicNote[]{new Chord("C4-E4")}));
+    }
+
     @Test
     public void testMidiDuration() {
         Duration quarter = new Duration(Duration.DurationValue.QUARTER, false);
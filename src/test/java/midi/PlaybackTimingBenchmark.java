@@ -0,0 +1,87 @@
+package midi;
+
+import music.play.Tempo;
+import music.play.TempoMap;
+import music.rhythm.Duration;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Times MidiUtils.getDurationMiliseconds through a TempoMap, as PlaySoundMidi.playStaff calls it once per note,
+ * over a long run of mixed note values, once at a single tempo and once with a hundred tempo changes. Notes within
+ * a tempo are timed from Duration's ratio table. Reports the bytes allocated while doing so, which should be zero
+ * once the loop is compiled.
+ * Not run as part of the test suite.
+ *
+ * @author reedt
+ */
+public class PlaybackTimingBenchmark {
+    private static final int NOTES = 10_000_000;
+
+    public static void main(String[] args) {
+        Duration[] durations = {
+                Duration.of(Duration.DurationValue.QUARTER, false),
+                Duration.of(Duration.DurationValue.EIGHTH, false),
+                Duration.of(Duration.DurationValue.HALF, true),
+                Duration.of(Duration.DurationValue.SIXTEENTH, false),
+                Duration.of(Duration.DurationValue.EIGHTH, true),
+                Duration.of(Duration.DurationValue.WHOLE, false),
+                Duration.of(Duration.DurationValue.THIRTY_SECONDTH, true)
+        };
+        Duration[] notes = new Duration[NOTES];
+
+        for (int i = 0; i < notes.length; i++) {
+            notes[i] = durations[(i * 7 + i / 3) % durations.length];
+        }
+
+        TempoMap constant = TempoMap.constant(new Tempo(Duration.of(Duration.DurationValue.QUARTER, true), 92),
+                TempoMap.DEFAULT_RESOLUTION);
+        TempoMap ritardando = TempoMap.constant(new Tempo(Duration.of(Duration.DurationValue.QUARTER, true), 92),
+                TempoMap.DEFAULT_RESOLUTION);
+        long tick = 0;
+
+        for (int i = 0; i < NOTES; i++) {
+            tick += ritardando.durationToTicks(notes[i]);
+
+            // a slower tempo every so often
+            if (i % 100_000 == 99_999) {
+                ritardando.addTempo(tick, 400_000 + i / 100_000 * 1_000);
+            }
+        }
+
+        // warm up
+        for (int i = 0; i < 5; i++) {
+            run(notes, constant);
+            run(notes, ritardando);
+        }
+
+        time("one tempo", notes, constant);
+        time("100 tempos", notes, ritardando);
+    }
+
+    private static void time(String name, Duration[] notes, TempoMap tempoMap) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long total = run(notes, tempoMap);
+        long elapsed = System.nanoTime() - start;
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+
+        System.out.printf("%s, %,d notes: %.2f ns/note, %d bytes allocated (total %d ms of music)%n",
+                name, NOTES, (double) elapsed / NOTES, allocated, total);
+    }
+
+    private static long run(Duration[] notes, TempoMap tempoMap) {
+        long total = 0;
+        long tick = 0;
+
+        for (Duration d : notes) {
+            total += MidiUtils.getDurationMiliseconds(d, tick, tempoMap);
+            tick += tempoMap.durationToTicks(d);
+        }
+
+        return total;
+    }
+}
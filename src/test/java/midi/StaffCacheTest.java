@@ -0,0 +1,101 @@
+package midi;
+
+import music.play.Staff;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author reedt
+ */
+public class StaffCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWarmLoadMatchesParse() throws Exception {
+        StaffCache cache = new StaffCache(folder.getRoot().toPath());
+        File[] files = {
+                new File("bin/midifiles/for_elise_by_beethoven.mid"),
+                new File("bin/midifiles/mz_331_1.mid"),
+                new File("bin/midifiles/test/test_basicnotes.mid")
+        };
+
+        for (File f : files) {
+            Staff parsed = new MidiFileParser().loadAndParseFile(f);
+            Staff cold = new MidiFileParser(MidiFileParser.ReadMode.MAPPED, ParseEventListener.NONE, cache)
+                    .loadAndParseFile(f);
+            String key = StaffCache.key(Files.readAllBytes(f.toPath()), MidiFileParser.PARSER_VERSION);
+
+            assertEquals(parsed, cold);
+            assertNotNull(cache.load(key));
+
+            Staff warm = new MidiFileParser(MidiFileParser.ReadMode.MAPPED, ParseEventListener.NONE, cache)
+                    .loadAndParseFile(f);
+
+            assertEquals(parsed, warm);
+            assertEquals(parsed.toString(), warm.toString());
+            assertEquals(parsed.tempoMap, warm.tempoMap);
+        }
+    }
+
+    @Test
+    public void testKeyDependsOnContentAndVersion() {
+        byte[] a = {1, 2, 3};
+        byte[] b = {1, 2, 4};
+
+        assertEquals(StaffCache.key(a, 1), StaffCache.key(a.clone(), 1));
+        assertNotEquals(StaffCache.key(a, 1), StaffCache.key(b, 1));
+        assertNotEquals(StaffCache.key(a, 1), StaffCache.key(a, 2));
+    }
+
+    @Test
+    public void testDamagedEntryIsAMiss() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        StaffCache cache = new StaffCache(dir);
+        File f = new File("bin/midifiles/test/test_basicnotes.mid");
+        String key = StaffCache.key(Files.readAllBytes(f.toPath()), MidiFileParser.PARSER_VERSION);
+
+        assertNull(cache.load(key));
+
+        Files.write(dir.resolve(key + ".staff"), new byte[]{0x52, 0x4d});
+        assertNull(cache.load(key));
+
+        // parsing again replaces the damaged entry
+        Staff parsed = new MidiFileParser(MidiFileParser.ReadMode.SEQUENCE, ParseEventListener.NONE, cache)
+                .loadAndParseFile(f);
+        assertEquals(parsed, cache.load(key));
+    }
+
+    @Test
+    public void testCorruptedEntryIsAMiss() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        StaffCache cache = new StaffCache(dir);
+        File f = new File("bin/midifiles/test/test_basicnotes.mid");
+        String key = StaffCache.key(Files.readAllBytes(f.toPath()), MidiFileParser.PARSER_VERSION);
+        Staff parsed = new MidiFileParser(MidiFileParser.ReadMode.SEQUENCE, ParseEventListener.NONE, cache)
+                .loadAndParseFile(f);
+        Path entry = dir.resolve(key + ".staff");
+        byte[] good = Files.readAllBytes(entry);
+
+        // every single byte set to every bad value either still loads or is a miss, never an exception
+        for (int i = 0; i < good.length; i++) {
+            for (int value : new int[]{0x07, 0x7f, 0x80, 0xff}) {
+                byte[] bad = good.clone();
+                bad[i] = (byte) value;
+                Files.write(entry, bad);
+
+                cache.load(key);
+            }
+        }
+
+        Files.write(entry, good);
+        assertEquals(parsed, cache.load(key));
+    }
+}
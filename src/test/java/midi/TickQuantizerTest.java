@@ -0,0 +1,73 @@
+package midi;
+
+import music.rhythm.Duration;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author reedt
+ */
+public class TickQuantizerTest {
+    @Test
+    public void testQuantize() {
+        TickQuantizer q = TickQuantizer.forResolution(96);
+
+        assertEquals(new Duration("Q"), q.quantize(96));
+        assertEquals(new Duration("Q"), q.quantize(100));
+        assertEquals(new Duration("E"), q.quantize(48));
+        assertEquals(new Duration("Hd"), q.quantize(288));
+        assertEquals(new Duration("W"), q.quantize(384));
+        assertEquals(new Duration("X"), q.quantize(6));
+
+        // longer than anything modeled
+        assertEquals(new Duration("W"), q.quantize(10000));
+    }
+
+    @Test
+    public void testQuantizedTicks() {
+        TickQuantizer q = TickQuantizer.forResolution(96);
+
+        assertEquals(96, q.quantizedTicks(100));
+        assertEquals(0, q.quantizedTicks(1));
+        assertEquals(384, q.quantizedTicks(1000));
+        assertEquals(288, q.toTicks(new Duration("Hd")));
+    }
+
+    @Test
+    public void testSharedPerResolution() {
+        assertSame(TickQuantizer.forResolution(480), TickQuantizer.forResolution(480));
+        assertNotSame(TickQuantizer.forResolution(480), TickQuantizer.forResolution(96));
+    }
+
+    @Test
+    public void testDecomposeMatchesRounding() {
+        TickQuantizer q = TickQuantizer.forResolution(96);
+        Duration[] buffer = new Duration[64];
+
+        for (long gap = -1; gap < 2000; gap++) {
+            // fill the gap one rounded rest at a time
+            List<Duration> expected = new ArrayList<>();
+            long left = gap;
+
+            while (left > 0 && q.quantizedTicks(left) > 0) {
+                expected.add(q.quantize(left));
+                left -= q.quantizedTicks(left);
+            }
+
+            int count = q.decompose(gap, buffer, 0);
+
+            assertEquals(expected.size(), q.restCount(gap));
+            assertEquals(expected, Arrays.asList(buffer).subList(0, count));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecomposeBufferTooSmall() {
+        TickQuantizer.forResolution(96).decompose(96 * 4 * 3, new Duration[2], 0);
+    }
+}
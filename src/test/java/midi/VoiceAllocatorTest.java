@@ -0,0 +1,53 @@
+package midi;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author reedt
+ */
+public class VoiceAllocatorTest {
+    @Test
+    public void testLowestSilentVoice() {
+        VoiceAllocator allocator = new VoiceAllocator(1);
+
+        // three overlapping notes need three voices
+        assertEquals(0, allocator.allocate(0, 100));
+        assertEquals(1, allocator.allocate(0, 50));
+        assertEquals(2, allocator.allocate(10, 30));
+        assertEquals(3, allocator.voiceCount());
+
+        // voices 1 and 2 are both silent at 60, the lower numbered one wins
+        assertEquals(1, allocator.allocate(60, 200));
+        assertEquals(2, allocator.allocate(60, 70));
+
+        // a note starting exactly when another ends reuses its voice
+        assertEquals(0, allocator.allocate(100, 150));
+        assertEquals(3, allocator.voiceCount());
+    }
+
+    @Test
+    public void testAddVoice() {
+        VoiceAllocator allocator = new VoiceAllocator(1);
+
+        assertEquals(1, allocator.addVoice(100));
+        // voice 0 was never used, so it is still silent
+        assertEquals(0, allocator.allocate(0, 100));
+        assertEquals(2, allocator.allocate(50, 60));
+    }
+
+    @Test
+    public void testManyVoices() {
+        VoiceAllocator allocator = new VoiceAllocator(0);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, allocator.allocate(i, 1000 - i));
+        }
+
+        // voices end in reverse order, so the highest numbered voices are silent first
+        assertEquals(98, allocator.allocate(902, 2000));
+        assertEquals(99, allocator.allocate(902, 2000));
+        assertEquals(0, allocator.allocate(1000, 2000));
+    }
+}
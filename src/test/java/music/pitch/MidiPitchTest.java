@@ -0,0 +1,87 @@
+package music.pitch;
+
+import music.rhythm.Duration;
+import org.junit.Test;
+import util.NoteBank;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author reedt
+ */
+public class MidiPitchTest {
+    @Test
+    public void testSpellings() {
+        assertEquals("C#4", MidiPitch.sharp(61).toString());
+        assertEquals("Db4", MidiPitch.flat(61).toString());
+        assertEquals("C4", MidiPitch.flat(60).toString());
+        assertEquals("B3", MidiPitch.sharp(59).toString());
+        assertEquals("C1", MidiPitch.sharp(MidiPitch.MIN_KEY).toString());
+        assertEquals("B8", MidiPitch.flat(MidiPitch.MAX_KEY).toString());
+    }
+
+    @Test
+    public void testShared() {
+        assertSame(MidiPitch.sharp(61), MidiPitch.sharp(61));
+        assertSame(MidiPitch.sharp(60), MidiPitch.flat(60));
+        assertNotSame(MidiPitch.sharp(61), MidiPitch.flat(61));
+    }
+
+    @Test
+    public void testMatchesPackedKey() {
+        for (int key = MidiPitch.MIN_KEY; key <= MidiPitch.MAX_KEY; key++) {
+            assertEquals(key, PackedNote.key(PackedNote.pack(MidiPitch.sharp(key).toNote(Duration.of(0.25)))));
+            assertEquals(key, PackedNote.key(PackedNote.pack(MidiPitch.flat(key).toNote(Duration.of(0.25)))));
+            assertTrue(MidiPitch.sharp(key).toNote(null).equalsPitchOnly(MidiPitch.flat(key).toNote(null)));
+        }
+    }
+
+    @Test
+    public void testFromMidiKey() {
+        Duration half = Duration.of(Duration.DurationValue.HALF, false);
+        Note n = Note.fromMidiKey(68, half);
+
+        assertTrue(n.equalsPitchOnly(NoteBank.gs));
+        assertSame(half, n.getDuration());
+        assertEquals(NoteValue.G, n.basePitch);
+    }
+
+    @Test
+    public void testKeySignatureSpellings() {
+        // F major: Bb is in the key signature, other black keys are spelled with flats
+        assertEquals("Bb4", MidiPitch.spelled(70, -1).toString());
+        assertEquals("Db4", MidiPitch.spelled(61, -1).toString());
+        assertEquals("B4", MidiPitch.spelled(71, -1).toString());
+
+        // E major
+        assertEquals("A#4", MidiPitch.spelled(70, 4).toString());
+        assertEquals("D#4", MidiPitch.spelled(63, 4).toString());
+
+        // C# major spells F as E# and C as B# in the octave below
+        assertEquals("E#4", MidiPitch.spelled(65, 7).toString());
+        assertEquals("B#4", MidiPitch.spelled(72, 7).toString());
+        assertEquals("D4", MidiPitch.spelled(62, 7).toString());
+
+        // Cb major spells B as Cb in the octave above
+        assertEquals("Cb5", MidiPitch.spelled(71, -7).toString());
+        assertEquals("Cb1", MidiPitch.spelled(MidiPitch.MIN_KEY - 1, -7).toString());
+        assertEquals("Fb4", MidiPitch.spelled(64, -7).toString());
+    }
+
+    @Test
+    public void testSpellingsRoundTrip() {
+        for (int fifths = -MidiPitch.MAX_FIFTHS; fifths <= MidiPitch.MAX_FIFTHS; fifths++) {
+            for (int key = MidiPitch.MIN_KEY; key <= MidiPitch.MAX_KEY; key++) {
+                MidiPitch p = MidiPitch.spelled(key, fifths);
+
+                assertEquals(key, p.key);
+                assertEquals(key, MidiPitch.keyOf(p.toNote(null)));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOutOfRange() {
+        MidiPitch.sharp(MidiPitch.MAX_KEY + 1);
+    }
+}
@@ -0,0 +1,104 @@
+package music.pitch;
+
+import music.play.PackedVoice;
+import music.play.Voice;
+import music.rhythm.Duration;
+import music.rhythm.Rest;
+import org.junit.Test;
+import util.NoteBank;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author reedt
+ */
+public class NoteScannerTest {
+    @Test
+    public void testParseNote() {
+        assertEquals(NoteBank.cs4, NoteScanner.parseNote("C#4:Q"));
+        assertEquals(NoteBank.cs4, NoteScanner.parseNote("c#4"));
+        assertEquals("Bb3:Ed", NoteScanner.parseNote(new StringBuilder("Bb3:Ed")).toNoteString());
+        assertSame(Duration.of(Duration.DurationValue.EIGHTH, true),
+                NoteScanner.parseNote("Bb3:Ed").getDuration());
+    }
+
+    @Test
+    public void testParsePacked() {
+        assertEquals(PackedNote.pack(NoteBank.db), NoteScanner.parsePacked("Db4:Q"));
+        assertEquals(PackedNote.packRest(new Duration("Sd")), NoteScanner.parsePacked("R:Sd"));
+    }
+
+    @Test
+    public void testScanRange() {
+        NoteScanner s = new NoteScanner("xxA4:Q,R:H,C5:Q-E5:Qxx", 2, 20);
+
+        assertEquals(3, s.countRemaining());
+        assertEquals(new Note("A4:Q"), s.next());
+        assertEquals(new Rest(new Duration("H")), s.next());
+        assertEquals(new Chord("C5:Q-E5:Q"), s.next());
+        assertFalse(s.hasNext());
+        assertEquals(20, s.position());
+    }
+
+    @Test
+    public void testChordNotPacked() {
+        NoteScanner s = new NoteScanner("A4,C5-E5");
+
+        assertEquals(PackedNote.pack(new Note("A4:Q")), s.nextPacked());
+
+        try {
+            s.nextPacked();
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("position 5"));
+        }
+    }
+
+    @Test
+    public void testErrorPosition() {
+        String[][] cases = {
+                {"A4:Q,H4:Q", "position 5"},
+                {"A4:Q,B:Q", "position 6"},
+                {"A4:Q,B9", "position 6"},
+                {"A4:Q,B4:Y", "position 8"},
+                {"A4:Q,B4:Xd", "position 8"},
+                {"A4:Q,R", "position 6"},
+                {"A4:Q;B4", "position 4"},
+        };
+
+        for (String[] c : cases) {
+            try {
+                Voice.parseVoiceString(c[0]);
+                fail(c[0]);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(c[1]));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTrailingCharacters() {
+        new Note("A4:Qx");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRestIsNotNote() {
+        new Note("R:Q");
+    }
+
+    @Test
+    public void testBulkParse() {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < 1000; i++) {
+            sb.append(i % 3 == 0 ? "R:E" : "F#5:S").append(',');
+        }
+
+        Voice v = Voice.parseVoiceString(sb);
+        PackedVoice packed = PackedVoice.parseVoiceString(sb, 0);
+
+        assertEquals(1000, v.size());
+        assertEquals(new Rest(new Duration("E")), v.getNote(999));
+        assertEquals(new PackedVoice(v), packed);
+    }
+}
@@ -1,5 +1,7 @@
 package music.pitch;
 
+import music.rhythm.Duration;
+import music.rhythm.Rest;
 import org.junit.Test;
 import util.NoteBank;
 
@@ -79,4 +81,46 @@ public class NoteTest {
         assertTrue(NoteBank.c4.compareTo(NoteBank.b4) < 0);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSemitone() {
+        assertEquals(60, NoteBank.c4.semitone);
+        assertEquals(NoteBank.c4.semitone, NoteBank.bs3.semitone);
+        assertEquals(71, NoteBank.cb5.semitone);
+        assertEquals(Note.NO_SEMITONE, new Rest(new Duration("Q")).semitone);
+
+        // B#4 sounds C5, an octave above C4
+        assertFalse(NoteBank.bs4.equalsPitchOnly(NoteBank.c4));
+        assertTrue(NoteBank.bs4.compareTo(NoteBank.c4) > 0);
+
+        // enharmonic notes order equally, whatever their duration
+        assertEquals(0, NoteBank.cs4.compareTo(new Note("Db4:H")));
+        assertEquals(0, Note.PITCH_ORDER.compare(NoteBank.b4, NoteBank.cb5));
+    }
+
+    @Test
+    public void testHashCode() {
+        Note n = new Note("A4:Q");
+        int hash = n.hashCode();
+
+        n.setDuration(new Duration("H"));
+        assertEquals(hash, n.hashCode());
+
+        // equal notes hash alike even when spelled differently
+        assertEquals(NoteBank.bs4.hashCode(), NoteBank.c5.hashCode());
+        assertEquals(NoteBank.cs4.pitchHashCode(), NoteBank.db.pitchHashCode());
+    }
+
+    @Test
+    public void testWriteTo() throws Exception {
+        BasicNote[] notes = {new Note("C4:Q"), new Note("Ab5:Hd"), new Note("F#1:X"), new Rest(new Duration("Sd")),
+                new Chord("C4:Q-E4:Q")};
+
+        for (BasicNote b : notes) {
+            StringBuilder sb = new StringBuilder();
+
+            assertEquals(b.toNoteString().length(), b.writeTo(sb));
+            assertEquals(b.toNoteString(), sb.toString());
+        }
+    }
+}
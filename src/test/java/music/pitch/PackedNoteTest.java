@@ -0,0 +1,74 @@
+package music.pitch;
+
+import music.rhythm.Duration;
+import music.rhythm.Rest;
+import org.junit.Test;
+import util.NoteBank;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author reedt
+ */
+public class PackedNoteTest {
+    @Test
+    public void testPackNote() {
+        int packed = PackedNote.pack(new Note("C#4:Ed"), 100, true);
+
+        assertEquals(61, PackedNote.key(packed));
+        assertEquals(NoteValue.C, PackedNote.basePitch(packed));
+        assertEquals(NoteValue.Accidental.SHARP, PackedNote.accidental(packed));
+        assertEquals(Octave.FOUR, PackedNote.octave(packed));
+        assertSame(Duration.of(Duration.DurationValue.EIGHTH, true), PackedNote.duration(packed));
+        assertEquals(100, PackedNote.velocity(packed));
+        assertTrue(PackedNote.isTied(packed));
+        assertFalse(PackedNote.isRest(packed));
+    }
+
+    @Test
+    public void testSpellingKept() {
+        int cs = PackedNote.pack(NoteBank.cs4);
+        int db = PackedNote.pack(NoteBank.db);
+
+        assertEquals(PackedNote.key(cs), PackedNote.key(db));
+        assertNotEquals(cs, db);
+        assertEquals("Db4:Q", PackedNote.toNote(db).toNoteString());
+
+        // spelled octave differs from sounding octave
+        assertEquals(72, PackedNote.key(PackedNote.pack(NoteBank.bs4)));
+        assertEquals("B#4:Q", PackedNote.toNote(PackedNote.pack(NoteBank.bs4)).toNoteString());
+        assertEquals(59, PackedNote.key(PackedNote.pack(NoteBank.cb5)) - 12);
+        assertEquals("Cb5:Q", PackedNote.toNote(PackedNote.pack(NoteBank.cb5)).toNoteString());
+    }
+
+    @Test
+    public void testPackRest() {
+        int packed = PackedNote.pack(new Rest(new Duration("H")));
+
+        assertTrue(PackedNote.isRest(packed));
+        assertEquals(packed, PackedNote.packRest(new Duration("H")));
+        assertNull(PackedNote.basePitch(packed));
+        assertEquals(new Rest(new Duration("H")), PackedNote.toNote(packed));
+        assertEquals(new Duration("Q"), PackedNote.duration(PackedNote.withDuration(packed, new Duration("Q"))));
+    }
+
+    @Test
+    public void testVelocityRange() {
+        assertEquals(0, PackedNote.velocity(PackedNote.pack(new Note("C4:Q"), 0, false)));
+        assertEquals(127, PackedNote.velocity(PackedNote.pack(new Note("C4:Q"), 127, false)));
+
+        for (int velocity : new int[]{-1, 128, 200}) {
+            try {
+                PackedNote.pack(new Note("C4:Q"), velocity, false);
+                fail("Velocity " + velocity + " was packed.");
+            } catch (IllegalArgumentException expected) {
+                // out of MIDI range
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testChordNotPacked() {
+        PackedNote.pack(new Chord(NoteBank.c4, NoteBank.e));
+    }
+}
@@ -52,4 +52,35 @@ public class IntervalTest {
 
         assertEquals(PerfectIntervals.OCTAVE.getNumHalfSteps(), IntervalUtils.getIntervalBetween(NoteBank.c4, NoteBank.c5).getNumHalfSteps());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCompoundIntervalBetween() {
+        // major tenth
+        assertEquals(new CompoundInterval(MajorIntervals._3rd, 1), IntervalUtils.getIntervalBetween(NoteBank.c4, new Note("E5")));
+
+        // two octaves
+        assertEquals(new CompoundInterval(PerfectIntervals.OCTAVE, 1), IntervalUtils.getIntervalBetween(NoteBank.c4, new Note("C6")));
+
+        // major seventh plus an octave, octave numbers only one apart
+        assertEquals(23, IntervalUtils.getIntervalBetween(NoteBank.c4, new Note("B5")).getNumHalfSteps());
+
+        // enharmonic notes across the octave line
+        assertEquals(PerfectIntervals.PERFECT_UNISON, IntervalUtils.getIntervalBetween(NoteBank.b4, NoteBank.cb5));
+    }
+
+    @Test
+    public void testIntervalTable() {
+        for (int halfSteps = 0; halfSteps < 200; halfSteps++) {
+            assertEquals(halfSteps, IntervalUtils.getInterval(halfSteps).getNumHalfSteps());
+        }
+
+        assertSame(IntervalUtils.getInterval(100), IntervalUtils.getInterval(100));
+        assertSame(PerfectIntervals.OCTAVE, IntervalUtils.getInterval(12));
+        assertSame(MinorIntervals._2nd, IntervalUtils.getInterval(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIntervalBetweenReversed() {
+        IntervalUtils.getIntervalBetween(NoteBank.c5, NoteBank.c4);
+    }
+}
@@ -0,0 +1,99 @@
+package music.play;
+
+import midi.MidiFileParser;
+import music.pitch.Note;
+import music.rhythm.Duration;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author reedt
+ */
+public class MeasureIndexTest {
+    private static final TimeSignature THREE_FOUR = new TimeSignature(3, TimeSignature.DenominatorChoices._4);
+
+    @Test
+    public void testSplitAtBarLines() {
+        Staff s = new Staff(new Tempo(120), THREE_FOUR, new Voice[]{
+                new Voice("C5:H,D5:H,E5:Hd,R:Hd"),
+                new Voice("C4:W,G3:Q", 1)});
+        MeasureIndex index = new MeasureIndex(s);
+
+        assertEquals(4, index.size());
+        assertEquals(144, index.getMeasureTicks());
+
+        Measure m1 = index.getMeasure(1);
+        assertEquals(1, m1.number);
+        assertEquals("Voice 0: C5:H...D5:Q", m1.voices.get(0).toString());
+        assertEquals("Voice 1: C4:Hd", m1.voices.get(1).toString());
+        assertSame(s.voices.get(0).getNote(0), m1.voices.get(0).getNote(0));
+        assertTrue(((Note) m1.voices.get(0).getNote(1)).isTiedToNext());
+        assertTrue(((Note) m1.voices.get(1).getNote(0)).isTiedToNext());
+
+        Measure m2 = index.getMeasure(2);
+        assertEquals("Voice 0: D5:Q...E5:H", m2.voices.get(0).toString());
+        assertEquals("Voice 1: C4:Q...G3:Q", m2.voices.get(1).toString());
+        assertFalse(((Note) m2.voices.get(0).getNote(0)).isTiedToNext());
+        assertTrue(((Note) m2.voices.get(0).getNote(1)).isTiedToNext());
+        assertFalse(((Note) m2.voices.get(1).getNote(0)).isTiedToNext());
+
+        // rests are split without ties
+        assertEquals("Voice 0: E5:Q...R:H", index.getMeasure(3).voices.get(0).toString());
+        assertEquals("Voice 1: ", index.getMeasure(3).voices.get(1).toString());
+        assertEquals("Voice 0: R:Q", index.getMeasure(4).voices.get(0).toString());
+
+        assertSame(m2, index.getMeasure(2));
+        assertEquals(3, index.getMeasureNumberAt(300));
+    }
+
+    @Test
+    public void testPartsNeedingSeveralDurations() {
+        // the bar line cuts a whole note into 5 and 3 eighths
+        Staff s = new Staff(new Tempo(120), THREE_FOUR, new Voice[]{new Voice("R:S,A4:W")});
+        MeasureIndex index = new MeasureIndex(s);
+
+        assertEquals("Voice 0: R:S....A4:H...A4:Ed", index.getMeasure(1).voices.get(0).toString());
+        assertEquals("Voice 0: A4:Q...A4:S", index.getMeasure(2).voices.get(0).toString());
+
+        long total = 0;
+
+        for (Measure m : index.getMeasures(1, 3)) {
+            total += m.voices.get(0).getTotalTicks();
+        }
+
+        assertEquals(s.getTotalTicks(), total);
+    }
+
+    @Test
+    public void testParsedStaff() throws Exception {
+        Staff s = new MidiFileParser().loadAndParseFile(new File("bin/midifiles/for_elise_by_beethoven.mid"));
+        MeasureIndex index = new MeasureIndex(s);
+
+        // start from the end, to check bars do not depend on those before them
+        for (int n = index.size(); n >= 1; n--) {
+            Measure m = index.getMeasure(n);
+
+            for (Voice v : m.voices) {
+                assertTrue(v.getTotalTicks() <= index.getMeasureTicks());
+            }
+        }
+
+        for (int v = 0; v < s.voices.size(); v++) {
+            long total = 0;
+
+            for (int n = 1; n <= index.size(); n++) {
+                total += index.getMeasure(n).voices.get(v).getTotalTicks();
+            }
+
+            assertEquals(s.voices.get(v).getTotalTicks(), total);
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testNoSuchMeasure() {
+        new MeasureIndex(new Staff(new Tempo(120), THREE_FOUR, new Voice[]{new Voice("A4:Q")})).getMeasure(2);
+    }
+}
@@ -0,0 +1,79 @@
+package music.play;
+
+import midi.MidiFileParser;
+import music.pitch.Note;
+import music.pitch.PackedNote;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author reedt
+ */
+public class PackedVoiceTest {
+    @Test
+    public void testReadApi() {
+        Voice v = new Voice("A4:Q,Bb4:Ed,R:S,C#5:W", 2);
+        PackedVoice packed = new PackedVoice(v);
+
+        assertEquals(4, packed.size());
+        assertEquals(2, packed.getIndex());
+        assertEquals(v.toString(), packed.toString());
+        assertEquals(v.getTotalTicks(), packed.getTotalTicks());
+        assertEquals(v.getTotalDurationValue(), packed.getTotalDurationValue(), 0);
+        assertArrayEquals(v.getTotalDuration(), packed.getTotalDuration());
+
+        for (int i = 0; i < v.size(); i++) {
+            assertEquals(v.getNote(i), packed.getNote(i));
+        }
+
+        assertEquals(0, packed.getOnset(0));
+        assertEquals(48 + 36, packed.getOnset(2));
+        assertEquals(v, packed.toVoice());
+    }
+
+    @Test
+    public void testAdd() {
+        PackedVoice packed = new PackedVoice(0);
+
+        for (int i = 0; i < 100; i++) {
+            packed.add(PackedNote.pack(new Note("G4:S")));
+        }
+
+        assertEquals(100, packed.size());
+        assertEquals(99 * 12, packed.getOnset(99));
+        assertEquals(100 * 12, packed.getTotalTicks());
+    }
+
+    @Test
+    public void testParsedStaff() throws Exception {
+        Staff s = new MidiFileParser().loadAndParseFile(new File("bin/midifiles/for_elise_by_beethoven.mid"));
+
+        for (Voice v : s.voices) {
+            PackedVoice packed = new PackedVoice(v);
+
+            assertEquals(v.toString(), packed.toString());
+            assertEquals(v, packed.toVoice());
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() {
+        new PackedVoice(0).getPacked(0);
+    }
+
+    @Test
+    public void testWriteTo() throws Exception {
+        Voice v = new Voice("A4:Q,Bb3:Sd,R:Wd,C#5:X,B#4:H,R:E", 3);
+        PackedVoice packed = new PackedVoice(v);
+        StringWriter out = new StringWriter();
+
+        packed.writeTo(out);
+
+        assertEquals(v.toString(), out.toString());
+        assertEquals(v.toString(), packed.toString());
+    }
+}
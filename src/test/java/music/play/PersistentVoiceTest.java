@@ -0,0 +1,131 @@
+package music.play;
+
+import midi.MidiFileParser;
+import music.pitch.BasicNote;
+import music.pitch.Note;
+import music.rhythm.Duration;
+import music.rhythm.Rest;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author reedt
+ */
+public class PersistentVoiceTest {
+    @Test
+    public void testReadApi() {
+        Voice v = new Voice("A4:Q,Bb4:Ed,R:S,C#5:W", 2);
+        PersistentVoice p = new PersistentVoice(v);
+
+        assertEquals(4, p.size());
+        assertEquals(2, p.getIndex());
+        assertEquals(v.toString(), p.toString());
+        assertEquals(v.getTotalTicks(), p.getTotalTicks());
+
+        for (int i = 0; i < v.size(); i++) {
+            assertEquals(v.getNote(i), p.getNote(i));
+            assertEquals(v.getOnset(i), p.getOnset(i));
+        }
+
+        assertEquals(v, p.toVoice());
+        assertEquals(new PersistentVoice(v), p);
+        assertEquals(new PersistentVoice(v).hashCode(), p.hashCode());
+    }
+
+    @Test
+    public void testEditsLeaveOldVersion() {
+        PersistentVoice empty = new PersistentVoice(0);
+        PersistentVoice one = empty.append(new Note("C4:Q"));
+        PersistentVoice two = one.append(new Note("D4:H"));
+        PersistentVoice replaced = two.set(0, new Rest(new Duration("W")));
+        PersistentVoice removed = replaced.remove(1);
+
+        assertEquals(0, empty.size());
+        assertEquals("Voice 0: C4:Q", one.toString());
+        assertEquals("Voice 0: C4:Q...D4:H", two.toString());
+        assertEquals("Voice 0: R:W....D4:H", replaced.toString());
+        assertEquals("Voice 0: R:W", removed.toString());
+        assertEquals(48 + 96, two.getTotalTicks());
+        assertEquals(192, removed.getTotalTicks());
+        assertEquals(0, removed.remove(0).size());
+    }
+
+    @Test
+    public void testRandomEdits() {
+        Random r = new Random(25);
+        String[] strings = {"C4:Q", "D#5:E", "Gb3:Hd", "A4:S", "B2:W", "E6:T"};
+        List<BasicNote> model = new ArrayList<>();
+        PersistentVoice p = new PersistentVoice(1);
+        PersistentVoice snapshot = p;
+        List<BasicNote> snapshotModel = new ArrayList<>();
+
+        // enough notes for three levels of chunks
+        for (int step = 0; step < 6000; step++) {
+            int op = r.nextInt(10);
+            BasicNote b = r.nextInt(5) == 0 ? new Rest(new Duration("E")) : new Note(strings[r.nextInt(strings.length)]);
+
+            if (op < 5 || model.isEmpty()) {
+                p = p.append(b);
+                model.add(b);
+            } else if (op < 8) {
+                int at = r.nextInt(model.size() + 1);
+                p = p.insert(at, b);
+                model.add(at, b);
+            } else if (op < 9) {
+                int at = r.nextInt(model.size());
+                p = p.set(at, b);
+                model.set(at, b);
+            } else {
+                int at = r.nextInt(model.size());
+                p = p.remove(at);
+                model.remove(at);
+            }
+
+            if (step % 1000 == 0) {
+                snapshot = p;
+                snapshotModel = new ArrayList<>(model);
+            }
+        }
+
+        assertMatches(new Voice(model, 1), p);
+        assertMatches(new Voice(snapshotModel, 1), snapshot);
+    }
+
+    @Test
+    public void testParsedVoices() throws Exception {
+        Staff s = new MidiFileParser().loadAndParseFile(new File("bin/midifiles/for_elise_by_beethoven.mid"));
+
+        for (Voice v : s.voices) {
+            PersistentVoice p = new PersistentVoice(v);
+
+            assertMatches(v, p);
+
+            for (int tick = -1; tick <= v.getTotalTicks(); tick += 7) {
+                assertEquals(v.getNoteIndexAt(tick), p.getNoteIndexAt(tick));
+            }
+        }
+    }
+
+    private static void assertMatches(Voice v, PersistentVoice p) {
+        assertEquals(v.size(), p.size());
+        assertEquals(v.getTotalTicks(), p.getTotalTicks());
+
+        int i = 0;
+
+        for (BasicNote b : p) {
+            assertSame(v.getNote(i), b);
+            assertSame(v.getNote(i), p.getNote(i));
+            assertEquals(v.getOnset(i), p.getOnset(i));
+            i++;
+        }
+
+        assertEquals(v.size(), i);
+        assertEquals(v.toString(), p.toString());
+    }
+}
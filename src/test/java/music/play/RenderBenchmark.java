@@ -0,0 +1,172 @@
+package music.play;
+
+import midi.MidiFileParser;
+import music.pitch.BasicNote;
+import music.pitch.Note;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Renders a parsed MIDI file many times over, three ways: with the old String based Voice.toString(), with
+ * Staff.toString(), and with Staff.writeTo() into a Writer which discards its output, as when dumping a corpus to a
+ * file. Reports the time and bytes allocated for each.
+ * Not run as part of the test suite.
+ *
+ * @author reedt
+ */
+public class RenderBenchmark {
+    private static final int ROUNDS = 200;
+
+    public static void main(String[] args) throws Exception {
+        File f = new File(args.length > 0 ? args[0] : "bin/midifiles/for_elise_by_beethoven.mid");
+        Staff staff = new MidiFileParser().loadAndParseFile(f);
+
+        if (!legacyToString(staff).equals(staff.toString())) {
+            throw new AssertionError("Staff.toString() differs from the old rendering.");
+        }
+
+        // warm up
+        for (int i = 0; i < 5; i++) {
+            runLegacy(staff);
+            runToString(staff);
+            runWriteTo(staff);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        for (String name : new String[]{"old toString", "toString", "writeTo"}) {
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            long chars = switch (name) {
+                case "old toString" -> runLegacy(staff);
+                case "toString" -> runToString(staff);
+                default -> runWriteTo(staff);
+            };
+            long elapsed = System.nanoTime() - start;
+            allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+
+            System.out.printf("%-12s %,d chars: %.2f ms, %,d bytes allocated%n",
+                    name, chars, elapsed / 1e6, allocated);
+        }
+    }
+
+    private static long runLegacy(Staff staff) {
+        long chars = 0;
+
+        for (int i = 0; i < ROUNDS; i++) {
+            chars += legacyToString(staff).length();
+        }
+
+        return chars;
+    }
+
+    private static long runToString(Staff staff) {
+        long chars = 0;
+
+        for (int i = 0; i < ROUNDS; i++) {
+            chars += staff.toString().length();
+        }
+
+        return chars;
+    }
+
+    private static long runWriteTo(Staff staff) throws IOException {
+        CountingWriter out = new CountingWriter();
+
+        for (int i = 0; i < ROUNDS; i++) {
+            staff.writeTo(out);
+        }
+
+        return out.chars;
+    }
+
+    /**
+     * Staff.toString() as it was before writeTo(), building a String per note and per voice.
+     */
+    private static String legacyToString(Staff staff) {
+        String kString = staff.keySignature == null ? "n/a" : staff.keySignature.toString();
+
+        String staffInfo = String.format("Staff: Tempo: %d bpm, Key %s, Time Signature %d/%d\n",
+                staff.tempo.bpm, kString, staff.timeSignature.getNumerator(), staff.timeSignature.getDenominator());
+        StringBuilder voiceString = new StringBuilder();
+        for (Voice v : staff.voices) {
+            StringBuilder sb = new StringBuilder();
+
+            for (BasicNote b : v.melody) {
+                sb.append(Note.compactFormatBasicNote(b));
+            }
+
+            voiceString.append(trimEnd("Voice " + v.getIndex() + ": " + sb, '.')).append("\n");
+        }
+
+        return staffInfo + "\n" + voiceString;
+    }
+
+    /**
+     * Utility used to remove characters from the end of a string.
+     *
+     * @param toTrim String to trim
+     * @param ch     Character to remove
+     * @return The string with all instances of ch removed from the tail.
+     */
+    private static String trimEnd(String toTrim, char ch) {
+        int goodLength = toTrim.length();
+
+        for (int i = toTrim.length() - 1; i > 0; i--) {
+            char c = toTrim.charAt(i);
+
+            if (c == ch) {
+                // knock off a character
+                goodLength--;
+            } else {
+                // trimmed as much as possible
+                break;
+            }
+        }
+
+        return toTrim.substring(0, goodLength);
+    }
+
+    private static class CountingWriter extends Writer {
+        long chars;
+
+        @Override
+        public void write(int c) {
+            chars++;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            chars += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            chars += len;
+        }
+
+        @Override
+        public Writer append(CharSequence csq) {
+            chars += csq.length();
+            return this;
+        }
+
+        @Override
+        public Writer append(char c) {
+            chars++;
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
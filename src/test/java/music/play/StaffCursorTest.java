@@ -0,0 +1,124 @@
+package music.play;
+
+import midi.MidiFileParser;
+import music.pitch.Note;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author reedt
+ */
+public class StaffCursorTest {
+    private static final TimeSignature COMMON_TIME = new TimeSignature(4, TimeSignature.DenominatorChoices._4);
+
+    @Test
+    public void testSlices() {
+        Staff s = new Staff(new Tempo(120), COMMON_TIME, new Voice[]{
+                new Voice("C5:Q,D5:Q,E5:H"),
+                new Voice("C4:H,R:E,G3:Ed", 1)});
+        StaffCursor c = s.cursor();
+
+        // tick, length, note index per voice, onset per voice
+        long[][] expected = {
+                {0, 48, 0, 0, 1, 1},
+                {48, 48, 1, 0, 1, 0},
+                {96, 24, 2, 1, 1, 1},
+                {120, 36, 2, 2, 0, 1},
+                {156, 36, 2, -1, 0, 0},
+        };
+
+        for (long[] slice : expected) {
+            assertTrue(c.next());
+            assertEquals(slice[0], c.getTick());
+            assertEquals(slice[1], c.getLength());
+            assertEquals(slice[2], c.getNoteIndex(0));
+            assertEquals(slice[3], c.getNoteIndex(1));
+            assertEquals(slice[4] == 1, c.isOnset(0));
+            assertEquals(slice[5] == 1, c.isOnset(1));
+        }
+
+        assertFalse(c.next());
+        assertFalse(c.next());
+
+        c.reset();
+        assertTrue(c.next());
+        assertEquals(new Note("C5:Q"), c.getNote(0));
+    }
+
+    @Test
+    public void testEmptyAndZeroLengthVoices() {
+        Voice zero = new Voice(new ArrayList<>(List.of(new Note("A4:N"))), 2);
+        Staff s = new Staff(new Tempo(120), COMMON_TIME, Arrays.asList(new Voice("A4:Q"),
+                new Voice(new ArrayList<>(), 1), zero));
+        StaffCursor c = s.cursor();
+
+        assertTrue(c.next());
+        assertEquals(48, c.getLength());
+        assertTrue(c.isOnset(0));
+        assertEquals(-1, c.getNoteIndex(1));
+        assertEquals(-1, c.getNoteIndex(2));
+        assertFalse(c.next());
+
+        assertFalse(new Staff(new Tempo(120), COMMON_TIME, new Voice[0]).cursor().next());
+    }
+
+    @Test
+    public void testCoversEveryNote() throws Exception {
+        Staff s = new MidiFileParser().loadAndParseFile(new File("bin/midifiles/for_elise_by_beethoven.mid"));
+        StaffCursor c = s.cursor();
+        int[] onsets = new int[s.voices.size()];
+        long lastTick = -1;
+        long end = 0;
+
+        while (c.next()) {
+            assertTrue(c.getTick() > lastTick);
+            lastTick = c.getTick();
+            end = c.getTick() + c.getLength();
+
+            for (int v = 0; v < c.voiceCount(); v++) {
+                int i = c.getNoteIndex(v);
+
+                if (i != -1) {
+                    Voice voice = s.voices.get(v);
+                    assertTrue(voice.getOnset(i) <= c.getTick());
+                    assertEquals(c.isOnset(v), voice.getOnset(i) == c.getTick());
+                }
+
+                if (c.isOnset(v)) {
+                    onsets[v]++;
+                }
+            }
+        }
+
+        assertEquals(s.getTotalTicks(), end);
+
+        for (int v = 0; v < onsets.length; v++) {
+            Voice voice = s.voices.get(v);
+            int nonZero = 0;
+
+            for (int i = 0; i < voice.size(); i++) {
+                if (voice.getNote(i).getDuration().getTicks() > 0) {
+                    nonZero++;
+                }
+            }
+
+            assertEquals(nonZero, onsets[v]);
+        }
+    }
+
+    @Test
+    public void testAlignedStaff() {
+        Staff s = new Staff(new Tempo(120), COMMON_TIME, new Voice[]{
+                new Voice("C5:Q,D5:Q"),
+                new Voice("C4:H,E4:Q", 1)});
+
+        assertEquals("Voice 0: C5:Q... D5:Q...        \n"
+                + "Voice 1: C4:H... ------- E4:Q...\n\n", s.getAlignedStaff());
+    }
+}
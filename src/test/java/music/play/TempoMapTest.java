@@ -0,0 +1,101 @@
+package music.play;
+
+import music.rhythm.Duration;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author reedt
+ */
+public class TempoMapTest {
+    @Test
+    public void testDefaultTempo() {
+        TempoMap map = new TempoMap(96);
+
+        assertEquals(1, map.size());
+        assertEquals(new Tempo(120), map.getTempo(0));
+        assertEquals(500_000, map.tickToMicros(96));
+        assertEquals(96, map.microsToTick(500_000));
+    }
+
+    @Test
+    public void testTickToMicros() {
+        TempoMap map = new TempoMap(100);
+        map.addTempo(0, 1_000_000);
+        map.addTempo(200, 500_000);
+        map.addTempo(300, 2_000_000);
+
+        assertEquals(3, map.size());
+        assertEquals(0, map.tickToMicros(0));
+        assertEquals(1_500_000, map.tickToMicros(150));
+        assertEquals(2_000_000, map.tickToMicros(200));
+        assertEquals(2_500_000, map.tickToMicros(300));
+        assertEquals(4_500_000, map.tickToMicros(400));
+
+        for (long tick = 0; tick < 1000; tick += 7) {
+            assertEquals(tick, map.microsToTick(map.tickToMicros(tick)));
+        }
+    }
+
+    @Test
+    public void testTempoLookup() {
+        TempoMap map = new TempoMap(100);
+        map.addTempo(50, 1_000_000);
+        map.addTempo(50, 750_000);
+        map.addTempo(80, 750_000);
+
+        // the second change at tick 50 replaces the first, and repeating a tempo adds nothing
+        assertEquals(2, map.size());
+        assertEquals(120, map.getTempo(49).bpm);
+        assertEquals(80, map.getTempo(50).bpm);
+        assertEquals(80, map.getTempo(10_000).bpm);
+    }
+
+    @Test
+    public void testDurationMicros() {
+        TempoMap map = new TempoMap(100);
+        map.addTempo(100, 1_000_000);
+
+        assertEquals(500_000, map.getDurationMicros(0, new Duration("Q")));
+        assertEquals(1_500_000, map.getDurationMicros(0, new Duration("H")));
+        assertEquals(2_000_000, map.getDurationMicros(100, new Duration("H")));
+    }
+
+    @Test
+    public void testDurationMicrosWithinSegment() {
+        TempoMap map = new TempoMap(480);
+        map.addTempo(0, 652_174);
+        map.addTempo(1_000_000, 400_000);
+
+        // timed from the ratio table, a note agrees with the tick arithmetic of the span it covers
+        for (Duration.DurationValue v : Duration.DurationValue.values()) {
+            for (boolean dot : new boolean[]{false, true}) {
+                if (v == Duration.DurationValue.SIXTY_FOURTH && dot) {
+                    continue;
+                }
+
+                Duration d = Duration.of(v, dot);
+
+                assertEquals(d.toString(), map.getDurationMicros(960, 960 + map.durationToTicks(d)),
+                        map.getDurationMicros(960, d));
+            }
+        }
+    }
+
+    @Test
+    public void testConstant() {
+        TempoMap map = TempoMap.constant(new Tempo(new Duration("H"), 60), 480);
+
+        // a half note beat at 60 bpm is a quarter note at 120
+        assertEquals(500_000, map.getMicrosecondsPerQuarter(0));
+        assertEquals(new Tempo(120), map.getTempo(10_000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOutOfOrder() {
+        TempoMap map = new TempoMap(100);
+        map.addTempo(100, 1_000_000);
+        map.addTempo(50, 1_000_000);
+    }
+}
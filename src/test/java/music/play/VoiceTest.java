@@ -1,7 +1,13 @@
 package music.play;
 
+import music.pitch.Note;
+import music.rhythm.Duration;
 import org.junit.Test;
 
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+
 import static org.junit.Assert.*;
 
 /**
@@ -33,4 +39,91 @@ public class VoiceTest {
 
         assertTrue(((double)5 / (double)16) == v.getTotalDurationValue());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testTotalTicks() {
+        Voice v = new Voice("A4:X,B4:Td,R:W,C4:Hd");
+
+        assertEquals(3 + 9 + 192 + 144, v.getTotalTicks());
+        assertArrayEquals(new Duration[]{Duration.ofTicks(192), Duration.ofTicks(144), Duration.ofTicks(12)},
+                v.getTotalDuration());
+    }
+
+    @Test
+    public void testOnsets() {
+        // onsets 0, 48, 96, 192, 288
+        Voice v = new Voice("A4:Q,B4:Q,R:H,C4:H,D4:Q");
+
+        assertEquals(96, v.getOnset(2));
+        assertEquals(336, v.getTotalTicks());
+
+        assertEquals(0, v.getNoteIndexAt(0));
+        assertEquals(0, v.getNoteIndexAt(47));
+        assertEquals(1, v.getNoteIndexAt(48));
+        assertEquals(2, v.getNoteIndexAt(191));
+        assertEquals(4, v.getNoteIndexAt(335));
+        assertEquals(-1, v.getNoteIndexAt(336));
+        assertEquals(-1, v.getNoteIndexAt(-1));
+
+        assertEquals(Arrays.asList(v.getNote(1), v.getNote(2)), v.getNotesBetween(50, 100));
+        assertEquals(Arrays.asList(v.getNote(2)), v.getNotesBetween(96, 192));
+        assertTrue(v.getNotesBetween(336, 400).isEmpty());
+        assertTrue(v.getNotesBetween(100, 100).isEmpty());
+        assertEquals(v.melody, v.getNotesBetween(-10, 1000));
+    }
+
+    @Test
+    public void testOnsetsUpdated() {
+        Voice v = new Voice(new ArrayList<>(), 0);
+
+        assertEquals(0, v.getTotalTicks());
+
+        v.addNote(new Note("A4:Q"));
+        assertEquals(48, v.getTotalTicks());
+
+        v.addNotes(new Note("B4:H"), new Note("C5:W"));
+        assertEquals(48 + 96 + 192, v.getTotalTicks());
+        assertEquals(2, v.getNoteIndexAt(200));
+
+        // replacing a note shifts everything after it
+        v.addNote(new Note("B4:Q"), 1);
+        assertEquals(96, v.getOnset(2));
+        assertEquals(1, v.getNoteIndexAt(95));
+        assertEquals(2, v.getNoteIndexAt(96));
+
+        v.getNote(0).setDuration(new Duration("W"));
+        v.invalidateOnsets();
+        assertEquals(192 + 48 + 192, v.getTotalTicks());
+
+        v.melody.remove(2);
+        assertEquals(192 + 48, v.getTotalTicks());
+    }
+
+    @Test
+    public void testPackedOnsetsMatch() {
+        Voice v = new Voice("A4:S,R:Td,C4:Hd,D5:E,E5:X");
+        PackedVoice packed = new PackedVoice(v);
+
+        for (int tick = -1; tick <= v.getTotalTicks(); tick++) {
+            assertEquals(v.getNoteIndexAt(tick), packed.getNoteIndexAt(tick));
+        }
+    }
+
+    @Test
+    public void testWriteTo() throws Exception {
+        Voice v = new Voice("A4:Q,Bb3:Sd,R:Wd,C#5:X,C4:Q-E4:Q-G4:Q,D8:Td,R:E");
+        StringBuilder legacy = new StringBuilder();
+
+        for (int i = 0; i < v.size(); i++) {
+            legacy.append(Note.compactFormatBasicNote(v.getNote(i)));
+        }
+
+        StringWriter out = new StringWriter();
+        v.writeTo(out);
+
+        // the old rendering padded every note, then trimmed the dots off the end
+        assertEquals(("Voice 0: " + legacy).replaceAll("\\.+$", ""), out.toString());
+        assertEquals(out.toString(), v.toString());
+        assertEquals("Voice 3: ", new Voice(new ArrayList<>(), 3).toString());
+    }
+}
@@ -2,6 +2,8 @@ package music.rhythm;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.*;
 
 /**
@@ -55,6 +57,21 @@ public class DurationTest {
         assertTrue(4 == whole.getDurationRatio(quarter));
     }
 
+    @Test
+    public void testRatioTable() {
+        for (Duration.DurationValue a : Duration.DurationValue.values()) {
+            for (Duration.DurationValue b : Duration.DurationValue.values()) {
+                Duration x = new Duration(a, false);
+                Duration y = Duration.of(b, false);
+
+                assertEquals(x.getTicks() / (double) y.getTicks(), x.getDurationRatio(y), 0);
+            }
+        }
+
+        assertTrue(1.5 == dottedQuarter.getDurationRatio(quarter));
+        assertTrue(0.375 == dottedQuarter.getDurationRatio(new Duration("W")));
+    }
+
     @Test
     public void testDurationByRatio() {
         assertEquals(eighth, Duration.getDurationByRatio(quarter, 0.5));
@@ -81,6 +98,56 @@ public class DurationTest {
         assertEquals(null, sixtyFourth.subdivide());
     }
 
+    @Test
+    public void testCanonicalInstances() {
+        Duration q = Duration.of(Duration.DurationValue.QUARTER, false);
+
+        assertSame(q, Duration.of(0.25));
+        assertSame(q, Duration.parseDurationString("Q"));
+        assertSame(q, Duration.getDurationByRatio(half, 0.5));
+        assertSame(q, Duration.of(Duration.DurationValue.HALF, false).subdivide());
+        assertSame(Duration.of(Duration.DurationValue.HALF, true), Duration.addDurations(quarter, half)[0]);
+        assertEquals(quarter, q);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoDottedSixtyFourth() {
+        Duration.of(Duration.DurationValue.SIXTY_FOURTH, true);
+    }
+
+    @Test
+    public void testTicks() {
+        assertEquals(Duration.TICKS_PER_WHOLE_NOTE, whole.getTicks());
+        assertEquals(72, dottedQuarter.getTicks());
+        assertEquals(3, sixtyFourth.getTicks());
+        assertSame(Duration.of(Duration.DurationValue.QUARTER, true), Duration.ofTicks(72));
+
+        // a thousand sixty-fourth notes add up exactly
+        Duration[] many = new Duration[1000];
+        Arrays.fill(many, sixtyFourth);
+        assertEquals(3000, Duration.sumTicks(many));
+        assertEquals(3000, Duration.sumTicks(Duration.addDurations(many)));
+    }
+
+    @Test
+    public void testDecompose() {
+        Duration[] buffer = new Duration[8];
+
+        // two wholes, then a dotted half and a sixteenth
+        int count = Duration.decompose(192 * 2 + 156, buffer, 1);
+
+        assertEquals(4, count);
+        assertEquals(count, Duration.decomposedLength(192 * 2 + 156));
+        assertArrayEquals(new Duration[]{null, whole, whole, dottedHalf, Duration.of(0.0625), null, null, null}, buffer);
+
+        assertEquals(0, Duration.decompose(0, buffer, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoDurationForTicks() {
+        Duration.ofTicks(5);
+    }
+
     @Test
     public void testCompare() {
         assertTrue(half.compareTo(whole) < 0);